@@ -1,287 +1,509 @@
-import java.io.*;
-import java.util.*;
-import java.util.concurrent.*;
-public class CalcsMain {
-    static final int numberOfParents = 50;
-    static final int numberOfGenerations = 30;
-    static final float offspringMutationChance = 0.7f;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Memetic evolutionary algorithm: the baseline operators followed by an
+ * adaptive choice of pattern search or random optimisation on every
+ * offspring. The weighting of the two local searches belongs to the
+ * instance, so concurrent runs adapt independently.
+ * Within a generation the offspring are searched in parallel. Each offspring
+ * draws from its own random number stream, split from the generation's
+ * stream in offspring order, and every search sees the weighting as it
+ * stood at the start of the generation. The outcome of each search is
+ * recorded in that offspring's slot and the weighting is adapted from the
+ * slots in offspring order once all searches are done, so a fixed seed
+ * gives the same run however the searches are scheduled. Searched one
+ * after another the offspring allocate nothing; the parallel search
+ * allocates only its fork/join tasks, a few hundred bytes per generation.
+ * It runs on its own pool rather than the common pool, whose workers erase
+ * their thread locals after every task and so would rebuild their
+ * evaluation contexts and row caches every generation.
+ * Before each offspring is searched the evaluation budget and time limit
+ * are checked, and once either is used up the remaining offspring are left
+ * as bred. Searched in parallel, which offspring those are depends on how
+ * the searches are scheduled, so a run that hits its budget mid-generation
+ * is only repeatable with ea.parallelLocalSearch=false.
+ * When the configured SamplingPolicy asks for a mini-batch, moves are
+ * estimated on a subset of training rows that rotates through a shuffled
+ * row order once per generation, and apparent improvements are confirmed
+ * on every row unless the policy says otherwise.
+ * The searches only need to know whether a move beats the current cost, so
+ * moves are scored with bounded evaluations that give up as soon as they
+ * cannot.
+ * When the configured SurrogatePolicy is enabled, an archive of evaluated
+ * genomes predicts each offspring's cost and only the offspring it ranks
+ * best are searched. The surrogate is not used on single probes, which are
+ * incremental and bounded and so cheaper than a nearest-neighbour query.
+ */
+public class CalcsMain extends EvolutionEngine {
     static final int numberOfTries = 20; // how many attempts should be made during random optimisation to find a new
     // minima
-    static double[][] population;
-    static double[] bestPop;
-    static double bestCost;
-    static float[] mutationWeighting = {1, 1, 1};
-    static float[] localSearchWeighting = {1, 1, 1};
-    static Random ran;
-    /*
-     * Creating an evolutionary algorithm system
+    static final boolean PARALLEL_LOCAL_SEARCH =
+            Boolean.parseBoolean(System.getProperty("ea.parallelLocalSearch", "true"));
+    private static final ForkJoinPool LOCAL_SEARCH_POOL =
+            PARALLEL_LOCAL_SEARCH ? new ForkJoinPool(Runtime.getRuntime().availableProcessors()) : null;
+    static final int NO_IMPROVEMENT = 0;
+    static final int PATTERN_IMPROVED = 1;
+    static final int RANDOM_IMPROVED = 2;
+    float[] mutationWeighting = {1, 1, 1};
+    float[] localSearchWeighting = {1, 1, 1};
+    private final double[] child = new double[genomeLength]; // scratch row for offspring improved one at a time
+    private final double[][] children; // scratch row per offspring slot
+    private final RandomStreams.Generator[] childRandoms; // repositioned by each generation's splits
+    private final int[] outcomes; // local search outcome per offspring slot, applied at generation end
+    private final long[] evaluationsUsed; // local search evaluations per offspring slot
+    private final IntConsumer improveSlot = this::ImproveSlot; // built once, the parallel search reuses it
+    private int slotCount; // offspring in the generation being improved
+    private final AtomicLong slotEvaluations = new AtomicLong(); // used so far by this generation's searches
+    private final Runnable improveSlots = () -> IntStream.range(0, slotCount).parallel().forEach(improveSlot);
+    private double[] slotGenomes; // genome matrix of the generation being improved
+    private float slotPatternWeight; // weighting at the start of the generation being improved
+    private float slotRandomWeight;
+    private final SamplingPolicy sampling;
+    private int[] rowOrder; // shuffled training rows the mini-batch window walks through
+    private int rowCursor;
+    private int[] sampleRows; // current mini-batch in ascending row order, or null for every row
+    private int offspringSinceRotation;
+    private final SurrogatePolicy surrogatePolicy;
+    private final SurrogateArchive archive; // null when the surrogate is off
+    private final double[] predictions; // surrogate cost per offspring slot
+    private final double[] preSearchCosts; // true cost of each offspring as it was predicted
+    private final int[] screenOrder; // offspring slots by ascending prediction
+    private final int[] screenScratch;
+    private final boolean[] searched; // whether each offspring slot was searched this generation
+    private boolean screened; // whether the population being evaluated was screened by the surrogate
+    private final RunningStatistics rankCorrelation = new RunningStatistics();
+    private long estimatedEvaluationsSaved;
+
+    public CalcsMain() {
+        this(EngineConfig.defaults());
+    }
+
+    public CalcsMain(EngineConfig config) {
+        super(config);
+        children = new double[numberOfParents][genomeLength];
+        childRandoms = new RandomStreams.Generator[numberOfParents];
+        for (int c = 0; c < numberOfParents; c++) childRandoms[c] = new RandomStreams.Generator();
+        outcomes = new int[numberOfParents];
+        evaluationsUsed = new long[numberOfParents];
+        sampling = config.sampling();
+        surrogatePolicy = config.surrogate();
+        archive = surrogatePolicy.enabled()
+                ? new SurrogateArchive(genomeLength, surrogatePolicy.archiveSize(), surrogatePolicy.neighbours())
+                : null;
+        predictions = new double[numberOfParents];
+        preSearchCosts = new double[numberOfParents];
+        screenOrder = new int[numberOfParents];
+        screenScratch = new int[numberOfParents];
+        searched = new boolean[numberOfParents];
+    }
+    /**
+     * Selects from a weighted list a local search algorithm and applies it
+     * to the offspring
+     *
+     * @param genomes The genome matrix holding the offspring
+     * @param offset The index of the offspring's first parameter
      */
-    public static long main() throws IOException {
-        double[] bestCosts = new double[numberOfGenerations];
-        long startTime = System.nanoTime();
-        for (float i : mutationWeighting) {
-            i = 1 / mutationWeighting.length;
-        }
-        for (float i : localSearchWeighting) {
-            i = 1 / localSearchWeighting.length;
-        }
-        var trainingProblem = new CarPricePrediction("train");
-        var bounds = CarPricePrediction.bounds();
-        // create set of randomly generated parents
-        population = InitialisePopulation(bounds);
-        EvaluatePopulation(population, trainingProblem);
-        // loop through generations
-        for (int i = 0; i < numberOfGenerations; i++) {
-            EvolvePopulation(trainingProblem);
-            bestCosts[i] = bestCost;
-            //System.out.printf("Generation %d has recorded " +
-            //"a best training error of: %f%n", i+1, bestCost);
+    @Override
+    void ImproveOffspring(double[] genomes, int offset) {
+        if (sampleRows == null || offspringSinceRotation++ == numberOfParents) {
+            RotateSample();
+            offspringSinceRotation = 1;
         }
-        long endTime = System.nanoTime();
-        long duration = (endTime - startTime) / 1000000;
-        //System.out.printf("%nBaseline algorithm finished " +
-        //"in %d milliseconds%n%n", duration);
-        // Check the MSE of the best parameters on the validation problem.
-        var validation_problem = new CarPricePrediction("test");
-        var validation_error = validation_problem.evaluate(bestPop);
-        //System.out.printf("Validation error of best solution " +
-        //"found while training: %f%n", validation_error);
-        return duration;
+        IncrementalEvaluator incremental = EvaluationContext.current().incremental(trainingProblem);
+        long before = incremental.evaluations();
+        System.arraycopy(genomes, offset, child, 0, genomeLength);
+        AdaptWeighting(LocalSearch(child, trainingProblem, random,
+                localSearchWeighting[0], localSearchWeighting[1], null, 0));
+        System.arraycopy(child, 0, genomes, offset, genomeLength);
+        evaluations += incremental.evaluations() - before;
     }
     /**
-     * Creates offspring from each parent, mutates each offspring and
-     * replaces old population with new offspring
+     * Runs local search on every offspring of the generation, in parallel
+     * unless ea.parallelLocalSearch is false, then adapts the weighting
+     * from the recorded outcomes in offspring order
      *
-     * @param trainingProblem The prediction class
+     * @param genomes The genome matrix holding the offspring
+     * @param count The number of offspring
      */
-    static void EvolvePopulation(CarPricePrediction trainingProblem) {
-        double[][][] parents = SelectParents(population, trainingProblem);
-        List<double[]> populationList = new ArrayList<>();
-        for (int i = 0; i < numberOfParents / 2; i++) {
-            // create offspring
-            double[][] offspringPair = OnePointCrossover(parents[i]);
-            for (double[] child : offspringPair) {
-                Random random = new Random();
-                float mutationRoll = random.nextFloat();
-                // mutate offspring
-                // possibly select from a weighted list a mutation
-                if (mutationRoll < offspringMutationChance) {
-                    SwapMutation(child);
-                }
-                // select from a weighted list a local search algorithm:
-                LocalSearch(child, trainingProblem);
-                // pattern search
-                // random optimisation
-                populationList.add(child);
-            }
+    @Override
+    void ImproveGeneration(double[] genomes, int count) {
+        slotGenomes = genomes;
+        slotCount = count;
+        slotEvaluations.set(0);
+        slotPatternWeight = localSearchWeighting[0];
+        slotRandomWeight = localSearchWeighting[1];
+        RotateSample();
+        for (int c = 0; c < count; c++) {
+            random.splitInto(childRandoms[c]);
         }
-        double[][] pop = populationList.toArray(population);
-        population = populationList.toArray(population);
-        EvaluatePopulation(population, trainingProblem);
-    }
-    static void LocalSearch(double[] child, CarPricePrediction training) {
-        Random random = new Random();
-        float searchRoll = random.nextFloat();
-        if (searchRoll < localSearchWeighting[0]) {
-            PatternSearch(child, training);
-        } else if (searchRoll < localSearchWeighting[0] + localSearchWeighting[1]) {
-            RandomOptimisation(child, training);
+        screened = archive != null && archive.size() > 0;
+        int searches = screened ? Screen(genomes, count) : count;
+        if (PARALLEL_LOCAL_SEARCH) {
+            LOCAL_SEARCH_POOL.submit(improveSlots).join();
+        } else {
+            for (int c = 0; c < count; c++) ImproveSlot(c);
         }
-    }
-    static void PatternSearch(double[] child, CarPricePrediction training) {
-        double startingEval = training.evaluate(child);
-        double[] temp = new double[child.length];
-        System.arraycopy(child, 0, temp, 0, child.length);
-        for (int i = 0; i < child.length; i++) {
-            Probe(i, 1, child, temp, training);
-            Probe(i, 0.5, child, temp, training);
-            Probe(i, 0.25, child, temp, training);
-            Probe(i, 0.125, child, temp, training);
+        long used = 0;
+        for (int c = 0; c < count; c++) {
+            AdaptWeighting(outcomes[c]);
+            used += evaluationsUsed[c];
         }
-        double endingEval = training.evaluate(child);
-        if (endingEval < startingEval && localSearchWeighting[0] < 0.85) {
-            localSearchWeighting[0] += 0.05;
-            localSearchWeighting[1] -= 0.05;
+        evaluations += used;
+        if (screened) {
+            // the offspring screened out would have cost about as much as the searched ones did
+            int searchesRun = 0;
+            for (int c = 0; c < count; c++) if (searched[c]) searchesRun++;
+            long saved = searchesRun == 0 ? 0 : Math.round((double) used / searchesRun * (count - searches));
+            estimatedEvaluationsSaved += saved;
+            Metrics.SURROGATE_SEARCHED.add(searches);
+            Metrics.SURROGATE_SCREENED.add(count - searches);
+            Metrics.SURROGATE_ESTIMATED_EVALUATIONS_SAVED.add(saved);
         }
     }
-    static void Probe(int i, double probeDist, double[] child, double[] temp, CarPricePrediction
-            training) {
-        double tempPos = child[i] + probeDist;
-        double tempNeg = child[i] - probeDist;
-        temp[i] = tempPos;
-        if (training.evaluate(temp) < training.evaluate(child)) {
-            child[i] = tempPos;
+    /**
+     * Runs local search on one offspring slot of the generation being
+     * improved, recording its outcome and the evaluations it used. When the
+     * surrogate screened the generation, the search records the offspring's
+     * true cost before it moved so the surrogate's prediction can be judged
+     * against it. Leaves the offspring unsearched once the run's
+     * evaluation budget or time limit is used up
+     *
+     * @param c The offspring slot
+     */
+    void ImproveSlot(int c) {
+        if (screened && !searched[c]) {
+            outcomes[c] = NO_IMPROVEMENT;
+            evaluationsUsed[c] = 0;
+            return;
         }
-        temp[i] = tempNeg;
-        if (training.evaluate(temp) < training.evaluate(child)) {
-            child[i] = tempNeg;
+        if (EvaluationsExhausted(evaluations + slotEvaluations.get()) || DeadlinePassed()) {
+            searched[c] = false;
+            outcomes[c] = NO_IMPROVEMENT;
+            evaluationsUsed[c] = 0;
+            return;
         }
+        IncrementalEvaluator incremental = EvaluationContext.current().incremental(trainingProblem);
+        long before = incremental.evaluations();
+        double[] row = children[c];
+        System.arraycopy(slotGenomes, c * genomeLength, row, 0, genomeLength);
+        outcomes[c] = LocalSearch(row, trainingProblem, childRandoms[c], slotPatternWeight, slotRandomWeight,
+                screened ? preSearchCosts : null, c);
+        System.arraycopy(row, 0, slotGenomes, c * genomeLength, genomeLength);
+        evaluationsUsed[c] = incremental.evaluations() - before;
+        slotEvaluations.addAndGet(evaluationsUsed[c]);
     }
-    static double[] RandomOptimisation(double[] child, CarPricePrediction training) {
-        double startingEval = training.evaluate(child);
-        for (int i = 0; i < child.length; i++) {
-            for (int x = 0; x < 10; x++) {
-                double newVal = -10 + ran.nextDouble() * (10 - -10);
-                child[i] = newVal;
-                double eval = training.evaluate(child);
-                if (eval < startingEval) {
-                    break;
-                }
+    /**
+     * Predicts the cost of every offspring with the surrogate and marks the
+     * searchFraction with the lowest predictions, breaking ties by slot, to
+     * be searched
+     *
+     * @param genomes The genome matrix holding the offspring
+     * @param count The number of offspring
+     * @return The number of offspring marked
+     */
+    int Screen(double[] genomes, int count) {
+        for (int c = 0; c < count; c++) {
+            predictions[c] = archive.predict(genomes, c * genomeLength);
+        }
+        SurrogateArchive.SortIndices(screenOrder, screenScratch, predictions, count);
+        int searches = Math.max(1, (int) Math.ceil(surrogatePolicy.searchFraction() * count));
+        Arrays.fill(searched, false);
+        for (int r = 0; r < searches; r++) searched[screenOrder[r]] = true;
+        return searches;
+    }
+    /**
+     * Starts the archive afresh with the initial population
+     *
+     * @param trainingProblem The prediction class
+     */
+    @Override
+    void Initialise(CarPricePrediction trainingProblem) {
+        screened = false;
+        if (archive != null) archive.clear();
+        super.Initialise(trainingProblem);
+    }
+    /**
+     * Scores the population, then measures how well the surrogate ranked
+     * every offspring, against the cost a searched offspring had before its
+     * search and the cost of an offspring that was screened out or drew no
+     * search, which is unchanged since it was predicted, and adds the whole
+     * population to the archive
+     */
+    @Override
+    void EvaluatePopulation() {
+        super.EvaluatePopulation();
+        if (archive == null) return;
+        if (screened) {
+            for (int c = 0; c < numberOfParents; c++) {
+                if (!searched[c] || Double.isNaN(preSearchCosts[c])) preSearchCosts[c] = fitness[c];
             }
-            double eval = training.evaluate(child);
-            if (eval < startingEval) {
-                break;
+            double correlation = numberOfParents > 2
+                    ? SurrogateArchive.RankCorrelation(predictions, preSearchCosts, numberOfParents) : Double.NaN;
+            if (!Double.isNaN(correlation)) {
+                rankCorrelation.add(correlation);
+                Metrics.SURROGATE_RANK_CORRELATION.add(correlation);
+                Metrics.SURROGATE_GENERATIONS.increment();
             }
+            screened = false;
         }
-        double endingEval = training.evaluate(child);
-        if (endingEval < startingEval && localSearchWeighting[1] < 0.85) {
-            localSearchWeighting[1] += 0.05;
-            localSearchWeighting[0] -= 0.05;
+        for (int c = 0; c < numberOfParents; c++) {
+            archive.add(genomes, c * genomeLength, fitness[c]);
         }
-        return new double[1];
     }
     /**
-     * Evaluates a given population to find the best MSE from all available
-     * candidates and saves the best
-     *
-     * @param _population the population
-     * @param trainingProblem the training problem with evaluation method
+     * @return Spearman's rank correlation between the surrogate's predictions
+     * and the true costs of every offspring before local search, one value
+     * per generation
      */
-    static void EvaluatePopulation(double[][] _population, CarPricePrediction trainingProblem) {
-        double _bestCost = 1000000000;
-        double[] _bestPop = null;
-        for (double[] doubles : _population) {
-            double cost = trainingProblem.evaluate(doubles);
-            if (cost < _bestCost) {
-                _bestCost = cost;
-                _bestPop = doubles;
+    public RunningStatistics surrogateRankCorrelation() {
+        return rankCorrelation;
+    }
+    /**
+     * @return An estimate of the local search evaluations the surrogate
+     * saved, from the mean cost of the offspring that were searched
+     */
+    public long estimatedEvaluationsSaved() {
+        return estimatedEvaluationsSaved;
+    }
+    /**
+     * Moves the mini-batch on to the next window of the shuffled row order,
+     * reshuffling the order when it runs out. Leaves the mini-batch unset
+     * when the policy scores on every row
+     */
+    void RotateSample() {
+        int rows = trainingProblem.rows();
+        if (!sampling.samples(rows)) {
+            sampleRows = null;
+            return;
+        }
+        int batch = sampling.batchRows();
+        if (rowOrder == null || rowOrder.length != rows) {
+            rowOrder = new int[rows];
+            for (int r = 0; r < rows; r++) rowOrder[r] = r;
+            rowCursor = rows;
+            sampleRows = new int[batch];
+        }
+        if (rowCursor + batch > rows) {
+            for (int r = rows - 1; r > 0; r--) {
+                int index = random.nextInt(r + 1);
+                int temp = rowOrder[index];
+                rowOrder[index] = rowOrder[r];
+                rowOrder[r] = temp;
             }
+            rowCursor = 0;
         }
-        bestCost = _bestCost;
-        bestPop = _bestPop;
+        System.arraycopy(rowOrder, rowCursor, sampleRows, 0, batch);
+        rowCursor += batch;
+        Arrays.sort(sampleRows); // ascending rows keep the scans cache friendly
     }
     /**
-     * Generates a random initial population of n size within the given bounds
+     * Selects a local search algorithm by the given weights and applies it
+     * to the child
      *
-     * @param bounds The bounds of the problem
-     * @return The generated population array
+     * @param child The candidate being improved, updated in place
+     * @param training The problem to search on
+     * @param rng The random number generator for this search
+     * @param patternWeight The chance of pattern search
+     * @param randomWeight The chance of random optimisation
+     * @param startingCosts Receives at slot the child's full cost before the
+     *                      search, as the search's reset() scored it, or NaN
+     *                      when neither search ran; null to record nothing
+     * @param slot The index of startingCosts to write
+     * @return Which local search, if any, lowered the child's cost
      */
-    // update initial parent selection method
-    static double[][] InitialisePopulation(double[][] bounds) {
-        double[][] pop = new double[numberOfParents][bounds.length];
-        for (int i = 0; i < numberOfParents; i++) {
-            var r = new Random();
-            ran = r;
-            pop[i] = RandomParameters(bounds, r);
+    int LocalSearch(double[] child, CarPricePrediction training, RandomGenerator rng,
+                    float patternWeight, float randomWeight, double[] startingCosts, int slot) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        int outcome = NO_IMPROVEMENT;
+        float searchRoll = rng.nextFloat();
+        if (searchRoll < patternWeight) {
+            if (Metrics.ENABLED) Metrics.PATTERN_SEARCHES.increment();
+            outcome = PatternSearch(child, training) ? PATTERN_IMPROVED : NO_IMPROVEMENT;
+        } else if (searchRoll < patternWeight + randomWeight) {
+            if (Metrics.ENABLED) Metrics.RANDOM_OPTIMISATIONS.increment();
+            outcome = RandomOptimisation(child, training, rng) ? RANDOM_IMPROVED : NO_IMPROVEMENT;
+        }
+        if (startingCosts != null) {
+            startingCosts[slot] = searchRoll < patternWeight + randomWeight
+                    ? EvaluationContext.current().incremental(training).resetCost() : Double.NaN;
         }
-        return pop;
+        if (Metrics.ENABLED) Metrics.LOCAL_SEARCH.record(System.nanoTime() - start);
+        return outcome;
     }
     /**
-     * Generates an array of random parameters within the boundary
-     *
-     * @param bounds The bounds of the problem
-     * @param r The random instance
-     * @return The array of randomly generated parameters making up one member of the population
+     * @return The size of the weighting and mini-batch state
      */
-    public static double[] RandomParameters(double[][] bounds, Random r) {
-        var parameters = new double[bounds.length];
-        for (int j = 0; j < bounds.length; j++) {
-            parameters[j] = bounds[j][0] + r.nextDouble() * (bounds[j][1] - bounds[j][0]);
+    @Override
+    int StateBytes() {
+        return (mutationWeighting.length + localSearchWeighting.length) * Float.BYTES + 6 * Integer.BYTES
+                + (rowOrder == null ? 0 : rowOrder.length + sampleRows.length) * Integer.BYTES
+                + (archive == null ? 0 : archive.stateBytes());
+    }
+    /**
+     * Saves the mini-batch size and archive capacity the state was laid out
+     * for, then the adapted weightings, the position of the mini-batch
+     * window and the surrogate's archive, which carry over from one
+     * generation to the next
+     * @param out The checkpoint
+     */
+    @Override
+    void WriteState(ByteBuffer out) {
+        out.putInt(sampling.batchRows()).putInt(ArchiveCapacity());
+        for (float weight : mutationWeighting) out.putFloat(weight);
+        for (float weight : localSearchWeighting) out.putFloat(weight);
+        out.putInt(rowCursor).putInt(offspringSinceRotation);
+        if (rowOrder == null) {
+            out.putInt(-1).putInt(-1);
+        } else {
+            out.putInt(rowOrder.length).putInt(sampleRows.length);
+            for (int row : rowOrder) out.putInt(row);
+            for (int row : sampleRows) out.putInt(row);
         }
-        return parameters;
+        if (archive != null) archive.write(out);
     }
     /**
-     * Fills and returns an array half the size of the input population
-     * with each value containing an array of two parents, each of
-     * which consists of an array of values used for evaluation
-     *
-     * @param _population The population set
-     * @param trainingProblem The prediction class
-     * @return The array of parent match arrays
+     * Restores the state saved by WriteState
+     * @param in The checkpoint
+     * @throws IOException If the checkpoint was written with another
+     * mini-batch size or surrogate archive
      */
-    static double[][][] SelectParents(double[][] _population, CarPricePrediction trainingProblem) {
-        double[][][] parentMatches = new double[_population.length / 2][2][];
-        int tournamentSelection = _population.length / 4;
-        tournamentSelection = Math.round(tournamentSelection / 2) * 2;
-        for (int i = 0; i < parentMatches.length; i++) {
-            parentMatches[i][0] = TournamentSelection(_population, tournamentSelection,
-                    trainingProblem);
-            parentMatches[i][1] = TournamentSelection(_population, tournamentSelection,
-                    trainingProblem);
+    @Override
+    void ReadState(ByteBuffer in) throws IOException {
+        if (in.getInt() != sampling.batchRows() || in.getInt() != ArchiveCapacity()) {
+            throw new IOException("The checkpoint was written by a different run.");
+        }
+        for (int w = 0; w < mutationWeighting.length; w++) mutationWeighting[w] = in.getFloat();
+        for (int w = 0; w < localSearchWeighting.length; w++) localSearchWeighting[w] = in.getFloat();
+        rowCursor = in.getInt();
+        offspringSinceRotation = in.getInt();
+        int rows = in.getInt();
+        int batch = in.getInt();
+        rowOrder = rows < 0 ? null : new int[rows];
+        sampleRows = batch < 0 ? null : new int[batch];
+        if (rowOrder != null) {
+            for (int r = 0; r < rows; r++) rowOrder[r] = in.getInt();
+            for (int r = 0; r < batch; r++) sampleRows[r] = in.getInt();
         }
-        return parentMatches;
+        if (archive != null) archive.read(in);
+    }
+    /**
+     * @return The number of genomes the surrogate archive holds, 0 when the
+     * surrogate is off
+     */
+    private int ArchiveCapacity() {
+        return archive == null ? 0 : surrogatePolicy.archiveSize();
+    }
+    /**
+     * @return A copy of the current pattern search and random optimisation chances
+     */
+    @Override
+    float[] LocalSearchWeighting() {
+        return new float[]{localSearchWeighting[0], localSearchWeighting[1]};
     }
     /**
-     * Performs tournament selection on the given population and returns the tournament winner
+     * Shifts weighting towards the local search that improved an offspring
      *
-     * @param _population An array of the current population which is legible for tournament
-    selection
-     * @param tournamentSelection The given number of tournament slots
-     * @param trainingProblem The predicate mechanism
-     * @return The tournament winner
+     * @param outcome The value returned by LocalSearch
      */
-    static double[] TournamentSelection(double[][] _population, int tournamentSelection,
-                                        CarPricePrediction trainingProblem) {
-        double bestValue = 1000000000;
-        double[] bestPop = null;
-        for (int i = 0; i < tournamentSelection; i++) {
-            int randomInt = ThreadLocalRandom.current().nextInt(0, _population.length);
-            double cost = trainingProblem.evaluate(_population[randomInt]);
-            if (cost < bestValue) {
-                bestPop = _population[randomInt];
-                bestValue = cost;
-            }
+    void AdaptWeighting(int outcome) {
+        if (outcome == PATTERN_IMPROVED && localSearchWeighting[0] < 0.85) {
+            localSearchWeighting[0] += 0.05;
+            localSearchWeighting[1] -= 0.05;
+        } else if (outcome == RANDOM_IMPROVED && localSearchWeighting[1] < 0.85) {
+            localSearchWeighting[1] += 0.05;
+            localSearchWeighting[0] -= 0.05;
         }
-        return bestPop;
+    }
+    boolean PatternSearch(double[] child, CarPricePrediction training) {
+        IncrementalEvaluator incremental = EvaluationContext.current().incremental(training);
+        incremental.sample(sampleRows);
+        double startingEval = incremental.reset(child);
+        for (int i = 0; i < child.length; i++) {
+            Probe(i, 1, child, incremental);
+            Probe(i, 0.5, child, incremental);
+            Probe(i, 0.25, child, incremental);
+            Probe(i, 0.125, child, incremental);
+        }
+        return incremental.costBelow(startingEval);
     }
     /**
-     * Randomly chooses a cutting point in the array and splits both parents
-     * at that point, before combining the halves of each parent with
-     * the other as offspring.
+     * Tries moving parameter i of the child up and down by probeDist, keeping
+     * either move if it lowers the cost. Moves are scored incrementally
+     * against the child, whose own cost is already cached, and on the
+     * mini-batch when one is set, giving up on a move once it cannot win
      *
-     * @param _population The population set
-     * @return The two offspring in an array
+     * @param i The index of the parameter to probe
+     * @param probeDist The distance to move the parameter
+     * @param child The candidate being improved, updated in place
+     * @param incremental An incremental evaluator whose base solution is the child
      */
-    static double[][] OnePointCrossover(double[][] _population) {
-        double[][] offspringArray = new double[2][_population[0].length];
-        int cutPoint = ThreadLocalRandom.current().nextInt(1, _population[0].length - 1);
-        for (int i = 0; i < cutPoint; i++) {
-            offspringArray[0][i] = _population[1][i];
-            offspringArray[1][i] = _population[0][i];
+    void Probe(int i, double probeDist, double[] child, IncrementalEvaluator incremental) {
+        double tempPos = child[i] + probeDist;
+        double tempNeg = child[i] - probeDist;
+        double posEval = incremental.estimateMove(i, tempPos, incremental.sampleCost());
+        if (posEval < incremental.sampleCost()) {
+            Keep(i, tempPos, posEval, child, incremental);
         }
-        for (int i = cutPoint; i < _population[0].length; i++) {
-            offspringArray[0][i] = _population[0][i];
-            offspringArray[1][i] = _population[1][i];
+        double negEval = incremental.estimateMove(i, tempNeg, incremental.sampleCost());
+        if (negEval < incremental.sampleCost()) {
+            Keep(i, tempNeg, negEval, child, incremental);
         }
-        return offspringArray;
     }
     /**
-     * Performs the swap mutation on an input candidate
+     * Keeps a move that lowered the estimated cost, first confirming it on
+     * every row when the policy asks for confirmation
      *
-     * @param input The array of parameters to be mutated
+     * @param i The index of the parameter to change
+     * @param value The new value of the parameter
+     * @param estimate The cost estimateMove gave the move
+     * @param child The candidate being improved, updated in place
+     * @param incremental An incremental evaluator whose base solution is the child
      */
-    static void SwapMutation(double[] input) {
-        int val1 = ThreadLocalRandom.current().nextInt(0, input.length);
-        int val2 = ThreadLocalRandom.current().nextInt(0, input.length);
-        var tempVar = input[val1];
-        input[val1] = input[val2];
-        input[val2] = tempVar;
+    void Keep(int i, double value, double estimate, double[] child, IncrementalEvaluator incremental) {
+        if (incremental.sampling() && sampling.confirmOnFullData()) {
+            double eval = incremental.evaluateMoveIfBelow(i, value, incremental.cost());
+            if (eval >= incremental.cost()) {
+                return;
+            }
+            incremental.acceptMove(i, value, eval);
+        } else {
+            incremental.acceptEstimatedMove(i, value, estimate);
+        }
+        child[i] = value;
     }
     /**
-     * Shuffles an array randomly
-     *
-     * @param array The array to be shuffled
+     * @param incremental An incremental evaluator whose base solution is the child
+     * @param startingEval The child's full cost before the search
+     * @return Whether a move that lowered the estimated cost also passes
+     * the policy's confirmation on every row
      */
-    static void shuffleArray(double[] array) {
-        int index;
-        double temp;
-        Random random = new Random();
-        for (int i = array.length - 1; i > 0; i--) {
-            index = random.nextInt(i + 1);
-            temp = array[index];
-            array[index] = array[i];
-            array[i] = temp;
+    boolean Confirmed(IncrementalEvaluator incremental, double startingEval) {
+        return !incremental.sampling() || !sampling.confirmOnFullData() || incremental.costBelow(startingEval);
+    }
+    boolean RandomOptimisation(double[] child, CarPricePrediction training, RandomGenerator rng) {
+        IncrementalEvaluator incremental = EvaluationContext.current().incremental(training);
+        incremental.sample(sampleRows);
+        double startingEval = incremental.reset(child);
+        double startingSample = incremental.sampleCost();
+        boolean improved = false;
+        for (int i = 0; i < child.length && !improved; i++) {
+            for (int x = 0; x < 10; x++) {
+                double newVal = -10 + rng.nextDouble() * (10 - -10);
+                child[i] = newVal;
+                double eval = incremental.commitMoveEstimated(i, newVal, startingSample);
+                if (eval < startingSample && Confirmed(incremental, startingEval)) {
+                    improved = true;
+                    break;
+                }
+            }
         }
+        return incremental.costBelow(startingEval);
     }
 }
-
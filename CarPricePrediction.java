@@ -1,15 +1,35 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
 import java.util.*;
 
-/** Car price prediction problem */
+/**
+ * Car price prediction problem.
+ * Instances are immutable once constructed and may be shared between
+ * threads; DatasetRegistry hands out one shared instance per dataset.
+ */
 public class CarPricePrediction {
     public static final int N_INPUTS = 21;
-    private static final int HIDDEN_LAYER_SIZE = 2;
-    private static final int N_WEIGHTS = N_INPUTS * HIDDEN_LAYER_SIZE + HIDDEN_LAYER_SIZE * 1;
+    static final int HIDDEN_LAYER_SIZE = 2;
+    static final int N_WEIGHTS = N_INPUTS * HIDDEN_LAYER_SIZE + HIDDEN_LAYER_SIZE * 1;
     private static final int N_BIASES = HIDDEN_LAYER_SIZE + 1;
     public static final int N_PARAMETERS = N_WEIGHTS + N_BIASES;
+    /** Signature of VectorEvaluator.evaluate(columns, targets, rows, parameters, base). */
+    static final MethodType VECTOR_EVALUATE_TYPE = MethodType.methodType(double.class, double[].class,
+            double[].class, int.class, double[].class, int.class);
+    /**
+     * VectorEvaluator.evaluate when evaluate uses the vector backend,
+     * otherwise null. Chosen once at startup from the "ea.backend" system
+     * property ("scalar" or "vector") and falls back to the scalar path when
+     * the jdk.incubator.vector module is not loaded or VectorEvaluator was
+     * not compiled. VectorEvaluator lives in the separate vector/ source
+     * directory and is only reached through this handle, so the rest of the
+     * tree compiles without the incubator module.
+     */
+    private static final MethodHandle VECTOR_EVALUATE = selectVectorBackend();
+    static final boolean VECTOR_BACKEND = VECTOR_EVALUATE != null;
 
     /**
      * Construct a car price prediction problem instance.
@@ -17,12 +37,28 @@ public class CarPricePrediction {
      *                "validation" or "test".
      */
     public CarPricePrediction(String dataset) throws IOException {
-        if(Objects.equals(dataset, "train")) load_dataset("data/train.csv");
-        else if(Objects.equals(dataset, "validation")) load_dataset("data/validation.csv");
-        else if(Objects.equals(dataset, "test")) load_dataset("data/test.csv");
+        DatasetCache.Data data;
+        if(Objects.equals(dataset, "train")) data = load_dataset("data/train.csv");
+        else if(Objects.equals(dataset, "validation")) data = load_dataset("data/validation.csv");
+        else if(Objects.equals(dataset, "test")) data = load_dataset("data/test.csv");
         else throw new IllegalArgumentException("Only permitted arguments for " +
                     "CarPricePrediction::CarPricePrediction are train, " +
                     "validation and test.");
+        X = data.features();
+        y = data.targets();
+        rows = y.length;
+    }
+
+    /**
+     * Construct a problem instance from any CSV file in the dataset format,
+     * for example a synthetic dataset of a chosen size.
+     * @param file The CSV file to load
+     */
+    CarPricePrediction(Path file) throws IOException {
+        DatasetCache.Data data = load_dataset(file.toString());
+        X = data.features();
+        y = data.targets();
+        rows = y.length;
     }
     /**
      * Rectangular bounds on the search space.
@@ -57,53 +93,335 @@ public class CarPricePrediction {
     /**
      * Evaluate a set of ANN parameters on the dataset used by the class
      * instance (train/validation/test).
+     * The squared error of each row is computed as d * d rather than
+     * Math.pow(d, 2.0). d * d is the correctly rounded square, which is what
+     * HotSpot returns for Math.pow(d, 2.0), so the MSE matches the previous
+     * List-backed implementation bit for bit (tolerance 0.0). The pow
+     * specification only promises 1 ulp, so other JVMs may differ by at most
+     * 1 ulp per squared row.
+     * Uses the calling thread's EvaluationContext for scratch space.
      * @param parameters An array of size N_PARAMETERS containing the weights
      *                   and biases to be used by the ANN to predict car
      *                   prices.
      * @return The MSE of the predictions of the ANN on the selected dataset.
      */
     public double evaluate(double[] parameters) {
+        return evaluate(parameters, EvaluationContext.current());
+    }
+
+    /**
+     * Evaluate a set of ANN parameters using caller-supplied scratch space.
+     * Allocates nothing, so callers that hold on to a context can score any
+     * number of candidates without producing garbage.
+     * @param parameters An array of size N_PARAMETERS containing the weights
+     *                   and biases of the ANN.
+     * @param context Scratch space owned by the calling thread.
+     * @return The MSE of the predictions of the ANN on the selected dataset.
+     */
+    public double evaluate(double[] parameters, EvaluationContext context) {
+        return evaluate(parameters, 0, context);
+    }
+
+    /**
+     * Evaluate the ANN parameters stored at parameters[base, base + N_PARAMETERS),
+     * for example one row of a flat genome matrix.
+     * @param parameters Array holding the weights and biases
+     * @param base Index of the first parameter
+     * @param context Scratch space owned by the calling thread.
+     * @return The MSE of the predictions of the ANN on the selected dataset.
+     */
+    public double evaluate(double[] parameters, int base, EvaluationContext context) {
+        if(VECTOR_BACKEND) return vectorEvaluate(parameters, base);
+        final double[] features = X;
+        final double[] targets = y;
+        final int n = rows;
+        final double[] hidden_layer_vals = context.hidden;
         double mse = 0.0;
-        for(int i = 0; i < X.size(); i++){
-            double y_pred = predict(X.get(i),parameters);
-            mse += Math.pow(y.get(i)-y_pred,2.0);
+        for(int i = 0, offset = 0; i < n; i++, offset += N_INPUTS){
+            double error = targets[i] - predict(features, offset, parameters, base, hidden_layer_vals);
+            mse += error * error;
         }
-        mse /= X.size();
+        mse /= n;
         return mse;
     }
 
-    private List<double[]> X;
-    private List<Double> y;
-
-    private void load_dataset(String file) throws IOException {
-        X = new ArrayList<>();
-        y = new ArrayList<>();
-        BufferedReader br = new BufferedReader(new FileReader(file));
-        String line;
-        while ((line = br.readLine()) != null) {
-            String[] line_data = line.split(",");
-            if(line_data.length != N_INPUTS + 1){
-                throw new RuntimeException("in CarpPricePrediction::load_dataset, " +
-                        "a line in the dataset contained the wrong number of" +
-                        "entries.");
+    /** Rows per tile in evaluateBatch, 64 rows of features is about 10KB. */
+    private static final int ROW_TILE = 64;
+    /** Candidates sharing each row tile in evaluateBatch. */
+    private static final int CANDIDATE_TILE = 16;
+
+    /**
+     * Evaluate many sets of ANN parameters in one pass over the dataset.
+     * @param candidates The parameter sets to evaluate
+     * @param out Output array, out[i] receives the MSE of candidates[i]
+     */
+    public void evaluateBatch(double[][] candidates, double[] out) {
+        evaluateBatch(candidates, 0, candidates.length, out, EvaluationContext.current());
+    }
+
+    /**
+     * Evaluate candidates[from, to) in one pass over the dataset.
+     * The rows are walked in tiles and each tile is applied to a group of
+     * candidates while it is in cache, instead of streaming the whole
+     * dataset once per candidate, and candidates are processed four at a
+     * time so their arithmetic overlaps. Each candidate still accumulates its
+     * squared errors in row order, so out[i] is bit-identical to
+     * evaluate(candidates[i]). The vector backend, when selected, already
+     * processes rows in lanes and is used per candidate instead.
+     * @param candidates The parameter sets to evaluate
+     * @param from The first candidate to evaluate
+     * @param to One past the last candidate to evaluate
+     * @param out Output array, out[i] receives the MSE of candidates[i]
+     * @param context Scratch space owned by the calling thread
+     */
+    public void evaluateBatch(double[][] candidates, int from, int to, double[] out,
+                              EvaluationContext context) {
+        batch(candidates, null, from, to, out, context);
+    }
+
+    /**
+     * Evaluate rows [from, to) of a flat genome matrix, where candidate c
+     * occupies genomes[c * N_PARAMETERS, (c + 1) * N_PARAMETERS), with the
+     * same tiled kernel and results as the double[][] overload. Keeping the
+     * candidates contiguous means each candidate tile is itself one
+     * sequential block of memory.
+     * @param genomes The flat genome matrix
+     * @param from The first candidate to evaluate
+     * @param to One past the last candidate to evaluate
+     * @param out Output array, out[c] receives the MSE of candidate c
+     * @param context Scratch space owned by the calling thread
+     */
+    public void evaluateBatch(double[] genomes, int from, int to, double[] out, EvaluationContext context) {
+        batch(null, genomes, from, to, out, context);
+    }
+
+    /**
+     * Shared tiled kernel; candidate c is candidates[c] when candidates is
+     * not null and row c of genomes otherwise.
+     */
+    private void batch(double[][] candidates, double[] genomes, int from, int to, double[] out,
+                       EvaluationContext context) {
+        if(VECTOR_BACKEND){
+            for(int c = from; c < to; c++){
+                out[c] = candidates != null
+                        ? vectorEvaluate(candidates[c], 0)
+                        : vectorEvaluate(genomes, c * N_PARAMETERS);
+            }
+            return;
+        }
+        final double[] features = X;
+        final double[] targets = y;
+        final int n = rows;
+        final double[] hidden_layer_vals = context.hidden;
+        for(int c0 = from; c0 < to; c0 += CANDIDATE_TILE){
+            int c1 = Math.min(c0 + CANDIDATE_TILE, to);
+            for(int c = c0; c < c1; c++) out[c] = 0.0;
+            for(int r0 = 0; r0 < n; r0 += ROW_TILE){
+                int r1 = Math.min(r0 + ROW_TILE, n);
+                int c = c0;
+                for(; c + 4 <= c1; c += 4){
+                    if(candidates != null){
+                        accumulateQuad(candidates[c], 0, candidates[c + 1], 0,
+                                candidates[c + 2], 0, candidates[c + 3], 0, out, c, r0, r1);
+                    } else {
+                        int base = c * N_PARAMETERS;
+                        accumulateQuad(genomes, base, genomes, base + N_PARAMETERS,
+                                genomes, base + 2 * N_PARAMETERS, genomes, base + 3 * N_PARAMETERS,
+                                out, c, r0, r1);
+                    }
+                }
+                for(; c < c1; c++){
+                    double[] parameters = candidates != null ? candidates[c] : genomes;
+                    int base = candidates != null ? 0 : c * N_PARAMETERS;
+                    double mse = out[c];
+                    for(int i = r0, offset = r0 * N_INPUTS; i < r1; i++, offset += N_INPUTS){
+                        double error = targets[i] - predict(features, offset, parameters, base, hidden_layer_vals);
+                        mse += error * error;
+                    }
+                    out[c] = mse;
+                }
+            }
+            for(int c = c0; c < c1; c++) out[c] /= n;
+        }
+    }
+
+    /**
+     * Adds the squared errors of rows [r0, r1) for four candidates, stored
+     * at p0[b0...] to p3[b3...], to out[c, c + 4). The four forward passes are
+     * interleaved so their dot products form independent dependency chains
+     * the CPU can overlap, while each candidate's own sums keep exactly the
+     * order used by predict.
+     */
+    private void accumulateQuad(double[] p0, int b0, double[] p1, int b1, double[] p2, int b2,
+                                double[] p3, int b3, double[] out, int c, int r0, int r1) {
+        final double[] features = X;
+        final double[] targets = y;
+        double mse0 = out[c], mse1 = out[c + 1], mse2 = out[c + 2], mse3 = out[c + 3];
+        final int output_bias = N_WEIGHTS + HIDDEN_LAYER_SIZE;
+        final int output_weights = N_INPUTS * HIDDEN_LAYER_SIZE;
+        for(int i = r0, offset = r0 * N_INPUTS; i < r1; i++, offset += N_INPUTS){
+            double o0 = p0[b0 + output_bias], o1 = p1[b1 + output_bias];
+            double o2 = p2[b2 + output_bias], o3 = p3[b3 + output_bias];
+            for(int u = 0; u < HIDDEN_LAYER_SIZE; u++){
+                int bias_pos = N_WEIGHTS + u;
+                double s0 = p0[b0 + bias_pos], s1 = p1[b1 + bias_pos];
+                double s2 = p2[b2 + bias_pos], s3 = p3[b3 + bias_pos];
+                for(int j = 0, weight_pos = u * N_INPUTS; j < N_INPUTS; j++, weight_pos++){
+                    double x = features[offset + j];
+                    s0 += x * p0[b0 + weight_pos];
+                    s1 += x * p1[b1 + weight_pos];
+                    s2 += x * p2[b2 + weight_pos];
+                    s3 += x * p3[b3 + weight_pos];
+                }
+                int weight_pos = output_weights + u;
+                o0 += relu(s0) * p0[b0 + weight_pos];
+                o1 += relu(s1) * p1[b1 + weight_pos];
+                o2 += relu(s2) * p2[b2 + weight_pos];
+                o3 += relu(s3) * p3[b3 + weight_pos];
+            }
+            double e0 = targets[i] - o0, e1 = targets[i] - o1;
+            double e2 = targets[i] - o2, e3 = targets[i] - o3;
+            mse0 += e0 * e0;
+            mse1 += e1 * e1;
+            mse2 += e2 * e2;
+            mse3 += e3 * e3;
+        }
+        out[c] = mse0;
+        out[c + 1] = mse1;
+        out[c + 2] = mse2;
+        out[c + 3] = mse3;
+    }
+
+    /**
+     * @return The number of rows in the loaded dataset.
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * @return The packed row-major feature matrix; callers must not modify it.
+     */
+    double[] features() {
+        return X;
+    }
+
+    /**
+     * @return The target vector; callers must not modify it.
+     */
+    double[] targets() {
+        return y;
+    }
+
+    /**
+     * @return The features in column-major order, feature j of row r at
+     * [j * rows + r], built on first use for the vector backend.
+     */
+    double[] columns() {
+        double[] result = columns;
+        if(result == null){
+            result = new double[X.length];
+            for(int r = 0; r < rows; r++)
+                for(int j = 0; j < N_INPUTS; j++)
+                    result[j * rows + r] = X[r * N_INPUTS + j];
+            columns = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return Whether the jdk.incubator.vector module is available to this JVM.
+     */
+    static boolean vectorApiAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    /**
+     * Looks up a static method of VectorEvaluator, which is compiled
+     * separately with "javac --add-modules jdk.incubator.vector -cp out -d out
+     * vector/*.java".
+     * @param name The method's name
+     * @param type The method's signature
+     * @return The method, or null when the module is not loaded or
+     * VectorEvaluator is not on the class path
+     */
+    static MethodHandle vectorMethod(String name, MethodType type) {
+        if(!vectorApiAvailable()) return null;
+        try {
+            return MethodHandles.lookup().findStatic(Class.forName("VectorEvaluator"), name, type);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("VectorEvaluator does not match CarPricePrediction.", e);
+        }
+    }
+
+    private static MethodHandle selectVectorBackend() {
+        String backend = System.getProperty("ea.backend", "scalar");
+        if(Objects.equals(backend, "scalar")) return null;
+        if(!Objects.equals(backend, "vector"))
+            throw new IllegalArgumentException("Only permitted values for ea.backend are " +
+                    "scalar and vector.");
+        MethodHandle evaluate = vectorMethod("evaluate", VECTOR_EVALUATE_TYPE);
+        if(evaluate == null)
+            System.err.println("jdk.incubator.vector or VectorEvaluator is not available, " +
+                    "using the scalar backend.");
+        return evaluate;
+    }
+
+    /**
+     * Evaluates parameters[base, base + N_PARAMETERS) with VectorEvaluator.
+     */
+    private double vectorEvaluate(double[] parameters, int base) {
+        try {
+            return (double) VECTOR_EVALUATE.invokeExact(columns(), y, rows, parameters, base);
+        } catch (Throwable e) {
+            throw new IllegalStateException("The vector backend failed.", e);
+        }
+    }
+
+    /** Row-major feature matrix, row i occupies X[i * N_INPUTS, (i + 1) * N_INPUTS). */
+    private final double[] X;
+    /** Target price of each row. */
+    private final double[] y;
+    private final int rows;
+    /** Column-major copy of X, see columns(). Racy initialisation is benign. */
+    private volatile double[] columns;
+
+    /**
+     * Loads a dataset from its binary cache when it is up to date, otherwise
+     * parses the CSV and refreshes the cache.
+     */
+    static DatasetCache.Data load_dataset(String file) throws IOException {
+        Path csv = Path.of(file);
+        DatasetCache.Data data = DatasetCache.ENABLED ? DatasetCache.read(csv, N_INPUTS) : null;
+        if(data == null){
+            data = parse_csv(file);
+            if(DatasetCache.ENABLED){
+                try {
+                    DatasetCache.write(csv, data, N_INPUTS);
+                } catch (IOException e) {
+                    System.err.println("Could not write dataset cache for " + file + ": " + e);
+                }
             }
-            double[] x = new double[N_INPUTS];
-            for(int i = 0; i < N_INPUTS; i++){ x[i] = Double.parseDouble(line_data[i]); }
-            X.add(x);
-            y.add(Double.parseDouble(line_data[N_INPUTS]));
         }
+        return data;
+    }
+
+    private static DatasetCache.Data parse_csv(String file) throws IOException {
+        return new CsvDatasetParser(N_INPUTS).parse(Path.of(file));
     }
 
-    private static double predict(double[] input, double[] parameters){
-        int weight_pos = 0;
-        int bias_pos = N_WEIGHTS;
+    static double predict(double[] features, int offset, double[] parameters, int base,
+                          double[] hidden_layer_vals){
+        int weight_pos = base;
+        int bias_pos = base + N_WEIGHTS;
 
-        double [] hidden_layer_vals = new double[HIDDEN_LAYER_SIZE];
         for (int i = 0; i < HIDDEN_LAYER_SIZE; i++){
             double weighted_sum = parameters[bias_pos];
             bias_pos++;
             for(int j = 0; j < N_INPUTS; j++){
-                weighted_sum += input[j]*parameters[weight_pos];
+                weighted_sum += features[offset + j]*parameters[weight_pos];
                 weight_pos++;
             }
             hidden_layer_vals[i] = relu(weighted_sum);
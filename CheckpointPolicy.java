@@ -0,0 +1,70 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * When and where a run saves checkpoints, and whether it resumes from one.
+ * Each run has its own checkpoint file in the directory, named after its
+ * algorithm and seed, so concurrent runs never overwrite each other and a
+ * seeded run finds its own checkpoint again. A sweep's run seeds derive from
+ * its base seed, which sweepSeed records in the directory so a resumed
+ * sweep derives the same run seeds and finds its runs' checkpoints.
+ * @param directory The directory holding checkpoint files, or null for none
+ * @param everyGenerations How many generations apart checkpoints are
+ *                         written, 0 to never write them
+ * @param resume Whether a run continues from its checkpoint when one exists
+ */
+public record CheckpointPolicy(Path directory, int everyGenerations, boolean resume) {
+    /** Never checkpoints and always starts from a fresh population. */
+    public static final CheckpointPolicy NONE = new CheckpointPolicy(null, 0, false);
+
+    public CheckpointPolicy {
+        if (everyGenerations < 0) {
+            throw new IllegalArgumentException("The checkpoint interval cannot be negative.");
+        }
+        if (directory == null && (everyGenerations > 0 || resume)) {
+            throw new IllegalArgumentException("Checkpointing needs a directory.");
+        }
+    }
+
+    /**
+     * @return The policy chosen by the ea.checkpointDir, ea.checkpointEvery
+     * and ea.resume system properties. Without a directory there are no
+     * checkpoints; with one they are written every 10 generations and runs
+     * start fresh unless ea.resume is true
+     */
+    public static CheckpointPolicy fromProperties() {
+        String directory = System.getProperty("ea.checkpointDir");
+        if (directory == null || directory.isEmpty()) return NONE;
+        return new CheckpointPolicy(Path.of(directory), Integer.getInteger("ea.checkpointEvery", 10),
+                Boolean.getBoolean("ea.resume"));
+    }
+
+    /**
+     * Chooses the base seed of a sweep of runs. When resuming without an
+     * ea.seed system property, the seed the sweep recorded in the directory
+     * is used; otherwise the given seed is recorded there for a later resume
+     * @param sweep The name of the sweep, such as "Baseline"
+     * @param seed The seed to use when there is nothing to resume
+     * @return The base seed of the sweep
+     */
+    public long sweepSeed(String sweep, long seed) throws IOException {
+        if (directory == null) return seed;
+        Path file = directory.resolve(sweep + ".seed");
+        if (resume && System.getProperty("ea.seed") == null && Files.isRegularFile(file)) {
+            return Long.parseLong(Files.readString(file).trim());
+        }
+        Files.createDirectories(directory);
+        Files.writeString(file, Long.toString(seed));
+        return seed;
+    }
+
+    /**
+     * @param algorithm The engine's class
+     * @param seed The run's seed
+     * @return The run's checkpoint file
+     */
+    Path file(Class<?> algorithm, long seed) {
+        return directory.resolve(algorithm.getSimpleName() + "-" + Long.toHexString(seed) + ".ckpt");
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Writes one run's checkpoints on a background thread so the generation
+ * loop never waits for the disk. The engine captures its state into a
+ * buffer, which is cheap, and hands it over; if the previous checkpoint is
+ * still being written when another arrives, only the newest one waiting is
+ * kept. Each checkpoint is written under a temporary name, forced to disk
+ * and moved over the last one, so the file always holds a complete
+ * checkpoint. The file holds a fixed header followed by the engine's
+ * little-endian payload:
+ * <pre>
+ * int magic, int version, int payload length, long CRC32 of the payload
+ * </pre>
+ * Write latency and size are recorded in Metrics.CHECKPOINT_WRITE and
+ * Metrics.CHECKPOINT_BYTES whether or not metrics are enabled, and
+ * Metrics.report() prints them at the end of a sweep either way.
+ */
+final class Checkpointer implements AutoCloseable {
+    private static final int MAGIC = 0x4541434B; // "EACK"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + Long.BYTES;
+    private final Path file;
+    private final ThreadPoolExecutor writer;
+
+    /**
+     * @param file The checkpoint file, whose directory is created if needed
+     */
+    Checkpointer(Path file) throws IOException {
+        this.file = file.toAbsolutePath();
+        Files.createDirectories(this.file.getParent());
+        writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1), task -> {
+            Thread thread = new Thread(task, "checkpoint-" + file.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardOldestPolicy());
+    }
+
+    /**
+     * Queues a checkpoint to be written
+     * @param payload The engine state from EvolutionEngine.Checkpoint(),
+     *                which the caller must not change afterwards
+     */
+    void submit(ByteBuffer payload) {
+        writer.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                long bytes = write(file, payload);
+                Metrics.CHECKPOINT_WRITE.record(System.nanoTime() - start);
+                Metrics.CHECKPOINT_BYTES.add(bytes);
+            } catch (IOException e) {
+                System.err.println("Checkpoint " + file + " was not written: " + e);
+            }
+        });
+    }
+
+    /**
+     * Waits for the queued checkpoint, if any, to be written
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes a checkpoint file
+     * @param file The checkpoint file
+     * @param payload The engine state
+     * @return The size of the file in bytes
+     */
+    static long write(Path file, ByteBuffer payload) throws IOException {
+        payload = payload.duplicate().rewind();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(payload.remaining()).putLong(crc.getValue()).flip();
+        long bytes = header.remaining() + payload.remaining();
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) channel.write(header);
+                while (payload.hasRemaining()) channel.write(payload);
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads a checkpoint file
+     * @param file The checkpoint file
+     * @return The engine state positioned at its start, or null when there
+     * is no checkpoint
+     * @throws IOException If the file is not a valid checkpoint
+     */
+    static ByteBuffer read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) return null;
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IOException(file + " is not a checkpoint of this version.");
+        }
+        int length = in.getInt();
+        long checksum = in.getLong();
+        if (length != in.remaining()) {
+            throw new IOException(file + " is truncated.");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(in.duplicate());
+        if (crc.getValue() != checksum) {
+            throw new IOException(file + " failed its checksum.");
+        }
+        return in.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,219 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for numeric CSV datasets.
+ * Reads the file through a fixed direct buffer and parses each field from
+ * its bytes, so no String is created per line or per field and the text is
+ * never held in memory; only the parsed doubles are kept.
+ * Fields with at most 18 significant digits and a decimal exponent within
+ * +-22 are converted exactly with a single multiply or divide by a power of
+ * ten. Anything else (long mantissas, huge exponents, NaN, Infinity) falls
+ * back to Double.parseDouble, so every value matches the String-based
+ * parser bit for bit.
+ * The rows are counted in a first pass over the file's bytes so the
+ * arrays are allocated once at their final size, rather than grown and
+ * trimmed with copies that briefly hold two or three times the data.
+ */
+final class CsvDatasetParser {
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final int columns;
+    private byte[] field = new byte[64];
+
+    /**
+     * @param columns The number of feature columns; each line must hold
+     *                columns + 1 fields, the last being the target.
+     */
+    CsvDatasetParser(int columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Parses a whole dataset file.
+     * @param file The CSV file to read
+     * @return The packed row-major features and the targets
+     */
+    DatasetCache.Data parse(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        long lines = countLines(file, buffer);
+        long elements = lines * columns;
+        if (lines > MAX_ARRAY_LENGTH || elements > MAX_ARRAY_LENGTH) {
+            throw new IOException(file + " holds " + lines + " rows of " + columns + " features, more than the "
+                    + MAX_ARRAY_LENGTH / Math.max(1, columns) + " rows an array of features can hold.");
+        }
+        double[] features = new double[(int) elements];
+        double[] targets = new double[(int) lines];
+        double[] row = new double[columns + 1];
+        int rows = 0;
+        long line = 1;
+        int fieldCount = 0;
+        int fieldLength = 0;
+        boolean lineStarted = false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (true) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                if (read < 0) break;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == ',' || b == '\n') {
+                        if (fieldCount <= columns) row[fieldCount] = parseField(fieldLength, line, file);
+                        fieldCount++;
+                        fieldLength = 0;
+                        if (b == '\n') {
+                            checkColumns(fieldCount, line, file);
+                            checkSize(rows, targets.length, file);
+                            System.arraycopy(row, 0, features, rows * columns, columns);
+                            targets[rows] = row[columns];
+                            rows++;
+                            line++;
+                            fieldCount = 0;
+                            lineStarted = false;
+                        } else {
+                            lineStarted = true;
+                        }
+                    } else if (b != '\r' && b != ' ' && b != '\t') {
+                        if (fieldLength == field.length) field = Arrays.copyOf(field, fieldLength * 2);
+                        field[fieldLength++] = b;
+                        lineStarted = true;
+                    }
+                }
+            }
+        }
+        if (lineStarted || fieldLength > 0) {
+            // last line without a trailing newline
+            if (fieldCount <= columns) row[fieldCount] = parseField(fieldLength, line, file);
+            fieldCount++;
+            checkColumns(fieldCount, line, file);
+            checkSize(rows, targets.length, file);
+            System.arraycopy(row, 0, features, rows * columns, columns);
+            targets[rows] = row[columns];
+            rows++;
+        }
+        if (rows != targets.length) throw new IOException(file + " changed while it was being read.");
+        return new DatasetCache.Data(features, targets);
+    }
+
+    /**
+     * Counts the lines holding data, which for a well-formed file is the
+     * number of rows: every newline ends one, and text after the last
+     * newline other than whitespace is one more.
+     * @param file The CSV file to read
+     * @param buffer The read buffer, reused by the parsing pass
+     * @return The number of rows the file holds
+     */
+    private static long countLines(Path file, ByteBuffer buffer) throws IOException {
+        long lines = 0;
+        boolean lineStarted = false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long remaining = Files.size(file);
+            while (remaining > 0) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                if (read < 0) break;
+                remaining -= read;
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+                    if (b == '\n') {
+                        lines++;
+                        lineStarted = false;
+                    } else if (b != '\r' && b != ' ' && b != '\t') {
+                        lineStarted = true;
+                    }
+                }
+            }
+        }
+        return lineStarted ? lines + 1 : lines;
+    }
+
+    private static void checkSize(int rows, int capacity, Path file) throws IOException {
+        if (rows == capacity) throw new IOException(file + " changed while it was being read.");
+    }
+
+    private void checkColumns(int fieldCount, long line, Path file) {
+        if (fieldCount != columns + 1) {
+            throw new RuntimeException("in CarPricePrediction::load_dataset, line " + line + " of " +
+                    file + " contained " + fieldCount + " entries instead of " + (columns + 1) + ".");
+        }
+    }
+
+    private double parseField(int length, long line, Path file) {
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (field[0] == '-' || field[0] == '+')) {
+            negative = field[0] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean digits = false;
+        boolean fraction = false;
+        for (; i < length; i++) {
+            byte b = field[i];
+            if (b >= '0' && b <= '9') {
+                digits = true;
+                if (mantissa == 0 && b == '0') {
+                    if (fraction) exponent--;
+                    continue;
+                }
+                if (++significant > 18) return slowParse(length, line, file);
+                mantissa = mantissa * 10 + (b - '0');
+                if (fraction) exponent--;
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (i < length) {
+            byte b = field[i];
+            if (!digits || (b != 'e' && b != 'E') || ++i == length) return slowParse(length, line, file);
+            boolean negativeExponent = false;
+            if (field[i] == '-' || field[i] == '+') {
+                negativeExponent = field[i] == '-';
+                if (++i == length) return slowParse(length, line, file);
+            }
+            int value = 0;
+            for (; i < length; i++) {
+                b = field[i];
+                if (b < '0' || b > '9' || value > 10000) return slowParse(length, line, file);
+                value = value * 10 + (b - '0');
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (!digits) return slowParse(length, line, file);
+        double result;
+        if (mantissa == 0) {
+            result = 0.0;
+        } else if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            result = exponent >= 0 ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+        } else {
+            return slowParse(length, line, file);
+        }
+        return negative ? -result : result;
+    }
+
+    private double slowParse(int length, long line, Path file) {
+        String text = new String(field, 0, length, StandardCharsets.US_ASCII);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("in CarPricePrediction::load_dataset, line " + line + " of " +
+                    file + " contained the non-numeric entry \"" + text + "\".");
+        }
+    }
+}
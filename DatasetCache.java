@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary cache of a parsed CSV dataset, stored next to it as "name.bin".
+ * The file holds a fixed header followed by the packed row-major features
+ * and the targets as little-endian doubles:
+ * <pre>
+ * int magic, int version, int rows, int features,
+ * long source size, long source last modified, long CRC32 of the payload
+ * </pre>
+ * The payload is written and memory-mapped a chunk at a time, with sizes
+ * and offsets in long arithmetic, so caches of datasets past 2 GiB work
+ * as long as the arrays holding them do. The cache is ignored when the
+ * header does not match the current CSV or the checksum fails, in which
+ * case the CSV is parsed again and the cache rewritten.
+ * Caching can be switched off with -Dea.datasetCache=false.
+ */
+final class DatasetCache {
+    private static final int MAGIC = 0x45414443; // "EADC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + 3 * Long.BYTES;
+    /** Doubles written or mapped at once, 8 MiB. */
+    private static final int CHUNK_DOUBLES = 1 << 20;
+    /** The longest array the JVM reliably allocates. */
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("ea.datasetCache", "true"));
+
+    /** Features and targets of a dataset in CarPricePrediction's packed layout. */
+    record Data(double[] features, double[] targets) {
+    }
+
+    private DatasetCache() {
+    }
+
+    /**
+     * @param csv The path of the CSV dataset
+     * @return The path of its binary cache
+     */
+    static Path cacheFile(Path csv) {
+        String name = csv.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return csv.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + ".bin");
+    }
+
+    /**
+     * Loads the cached copy of a CSV dataset.
+     * @param csv The path of the CSV dataset
+     * @param columns The expected number of features per row
+     * @return The cached dataset, or null when there is no up to date cache
+     */
+    static Data read(Path csv, int columns) throws IOException {
+        Path cache = cacheFile(csv);
+        if (!Files.isRegularFile(cache)) return null;
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) return null;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) return null;
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) return null;
+            int rows = header.getInt();
+            int features = header.getInt();
+            long sourceSize = header.getLong();
+            long sourceModified = header.getLong();
+            long checksum = header.getLong();
+            long elements = (long) rows * columns;
+            if (features != columns || rows < 0 || elements > MAX_ARRAY_LENGTH
+                    || sourceSize != Files.size(csv)
+                    || sourceModified != Files.getLastModifiedTime(csv).toMillis()
+                    || channel.size() != HEADER_BYTES + (elements + rows) * Double.BYTES) {
+                return null;
+            }
+            double[] x = new double[(int) elements];
+            double[] y = new double[rows];
+            CRC32 crc = new CRC32();
+            long position = ReadDoubles(channel, HEADER_BYTES, x, crc);
+            ReadDoubles(channel, position, y, crc);
+            if (crc.getValue() != checksum) return null;
+            return new Data(x, y);
+        }
+    }
+
+    /**
+     * Fills an array from the file a mapped chunk at a time
+     * @param channel The cache file
+     * @param position The file offset of the first double
+     * @param values The array to fill
+     * @param crc The checksum to update with the bytes read
+     * @return The file offset after the last double
+     */
+    private static long ReadDoubles(FileChannel channel, long position, double[] values, CRC32 crc)
+            throws IOException {
+        for (int from = 0; from < values.length; ) {
+            int count = Math.min(values.length - from, CHUNK_DOUBLES);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * Double.BYTES);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            crc.update(mapped.duplicate());
+            mapped.asDoubleBuffer().get(values, from, count);
+            position += (long) count * Double.BYTES;
+            from += count;
+        }
+        return position;
+    }
+
+    /**
+     * Writes the cache for a CSV dataset. The payload is written a chunk at
+     * a time and the header, which holds its checksum, last. The file is
+     * written under a temporary name and moved into place, so concurrent
+     * readers never see a partial cache.
+     * @param csv The path of the CSV dataset the data was parsed from
+     * @param data The parsed dataset
+     * @param columns The number of features per row
+     */
+    static void write(Path csv, Data data, int columns) throws IOException {
+        Path cache = cacheFile(csv);
+        int rows = data.targets().length;
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_BYTES);
+                ByteBuffer chunk = ByteBuffer.allocate(CHUNK_DOUBLES * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                CRC32 crc = new CRC32();
+                WriteDoubles(channel, chunk, data.features(), crc);
+                WriteDoubles(channel, chunk, data.targets(), crc);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(columns)
+                        .putLong(Files.size(csv))
+                        .putLong(Files.getLastModifiedTime(csv).toMillis())
+                        .putLong(crc.getValue())
+                        .flip();
+                long position = 0;
+                while (header.hasRemaining()) position += channel.write(header, position);
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Appends an array to the file a chunk at a time
+     * @param channel The cache file, positioned where the array goes
+     * @param chunk The buffer to stage each chunk in
+     * @param values The array to write
+     * @param crc The checksum to update with the bytes written
+     */
+    private static void WriteDoubles(FileChannel channel, ByteBuffer chunk, double[] values, CRC32 crc)
+            throws IOException {
+        for (int from = 0; from < values.length; ) {
+            int count = Math.min(values.length - from, chunk.capacity() / Double.BYTES);
+            chunk.clear();
+            chunk.asDoubleBuffer().put(values, from, count);
+            chunk.limit(count * Double.BYTES);
+            crc.update(chunk.duplicate());
+            while (chunk.hasRemaining()) channel.write(chunk);
+            from += count;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of loaded datasets.
+ * Each dataset ("train", "validation" or "test") is loaded at most once, by
+ * whichever thread asks for it first, and every later caller shares the same
+ * immutable CarPricePrediction and its backing arrays.
+ */
+public final class DatasetRegistry {
+    private static final ConcurrentHashMap<String, CarPricePrediction> DATASETS = new ConcurrentHashMap<>();
+
+    private DatasetRegistry() {
+    }
+
+    /**
+     * @param dataset The dataset to use. Valid values are "train",
+     *                "validation" or "test".
+     * @return The shared problem instance for the dataset
+     */
+    public static CarPricePrediction get(String dataset) throws IOException {
+        try {
+            return DATASETS.computeIfAbsent(dataset, name -> {
+                try {
+                    return new CarPricePrediction(name);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
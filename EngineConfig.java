@@ -0,0 +1,78 @@
+import java.util.SplittableRandom;
+
+/**
+ * Settings of one evolutionary algorithm run.
+ * @param numberOfParents The population size
+ * @param numberOfGenerations The most generations to evolve
+ * @param offspringMutationChance The probability that an offspring is mutated
+ * @param seed The seed of the run's random number generator
+ * @param evaluator How populations are scored
+ * @param sampling How local search scores candidate moves
+ * @param termination When a run may stop before its last generation
+ * @param checkpoint When the run saves checkpoints and whether it resumes
+ * @param surrogate Which offspring get local search
+ */
+public record EngineConfig(int numberOfParents, int numberOfGenerations, float offspringMutationChance,
+                           long seed, PopulationEvaluator evaluator, SamplingPolicy sampling,
+                           Termination termination, CheckpointPolicy checkpoint, SurrogatePolicy surrogate) {
+    /** Shared evaluator chosen by the ea.evaluator system property. */
+    private static final PopulationEvaluator DEFAULT_EVALUATOR = PopulationEvaluator.fromProperties();
+
+    /**
+     * @return The study's settings, 50 parents for 30 generations with a 0.7
+     * mutation chance, seeded from the ea.seed system property or with a
+     * fresh random seed when it is not set, and with the sampling policy,
+     * termination criteria, checkpoint policy and surrogate chosen by system
+     * properties
+     */
+    public static EngineConfig defaults() {
+        return new EngineConfig(50, 30, 0.7f, Long.getLong("ea.seed", new SplittableRandom().nextLong()),
+                DEFAULT_EVALUATOR, SamplingPolicy.fromProperties(), Termination.fromProperties(),
+                CheckpointPolicy.fromProperties(), SurrogatePolicy.fromProperties());
+    }
+
+    /**
+     * @param seed The seed to use
+     * @return A copy of these settings with a different seed
+     */
+    public EngineConfig withSeed(long seed) {
+        return new EngineConfig(numberOfParents, numberOfGenerations, offspringMutationChance, seed, evaluator,
+                sampling, termination, checkpoint, surrogate);
+    }
+
+    /**
+     * @param sampling The sampling policy to use
+     * @return A copy of these settings with a different sampling policy
+     */
+    public EngineConfig withSampling(SamplingPolicy sampling) {
+        return new EngineConfig(numberOfParents, numberOfGenerations, offspringMutationChance, seed, evaluator,
+                sampling, termination, checkpoint, surrogate);
+    }
+
+    /**
+     * @param termination The termination criteria to use
+     * @return A copy of these settings with different termination criteria
+     */
+    public EngineConfig withTermination(Termination termination) {
+        return new EngineConfig(numberOfParents, numberOfGenerations, offspringMutationChance, seed, evaluator,
+                sampling, termination, checkpoint, surrogate);
+    }
+
+    /**
+     * @param checkpoint The checkpoint policy to use
+     * @return A copy of these settings with a different checkpoint policy
+     */
+    public EngineConfig withCheckpoint(CheckpointPolicy checkpoint) {
+        return new EngineConfig(numberOfParents, numberOfGenerations, offspringMutationChance, seed, evaluator,
+                sampling, termination, checkpoint, surrogate);
+    }
+
+    /**
+     * @param surrogate The surrogate policy to use
+     * @return A copy of these settings with a different surrogate policy
+     */
+    public EngineConfig withSurrogate(SurrogatePolicy surrogate) {
+        return new EngineConfig(numberOfParents, numberOfGenerations, offspringMutationChance, seed, evaluator,
+                sampling, termination, checkpoint, surrogate);
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-thread scratch space for evaluating ANN parameters.
+ * Holds the hidden layer buffer used by CarPricePrediction::predict and the
+ * row caches of an IncrementalEvaluator so that repeated evaluations
+ * allocate nothing once the context exists. Also counts the rows that
+ * bounded and incremental evaluations on this thread scored and skipped,
+ * and adds them to process-wide totals that any thread may read and that
+ * keep the counts of threads that have since ended. A context must only be
+ * used by one thread at a time; use current() to get the calling thread's
+ * own instance.
+ */
+public final class EvaluationContext {
+    private static final ThreadLocal<EvaluationContext> CONTEXTS =
+            ThreadLocal.withInitial(EvaluationContext::new);
+    private static final LongAdder TOTAL_SCORED = new LongAdder();
+    private static final LongAdder TOTAL_SKIPPED = new LongAdder();
+
+    /** Rows scored and skipped by bounded and incremental evaluations on one thread. */
+    static final class RowCounters {
+        private long scored; // only read and written by the owning thread
+        private long skipped;
+
+        /**
+         * Counts one evaluation on this thread and in the process-wide totals
+         * @param rowsScored The rows it scored
+         * @param rowsSkipped The rows it skipped
+         */
+        void add(long rowsScored, long rowsSkipped) {
+            scored += rowsScored;
+            TOTAL_SCORED.add(rowsScored);
+            if (rowsSkipped > 0) {
+                skipped += rowsSkipped;
+                TOTAL_SKIPPED.add(rowsSkipped);
+            }
+        }
+    }
+
+    final double[] hidden = new double[CarPricePrediction.HIDDEN_LAYER_SIZE];
+    final RowCounters counters = new RowCounters();
+    private IncrementalEvaluator incremental;
+
+    private EvaluationContext() {
+    }
+
+    /**
+     * @return The evaluation context owned by the calling thread, created on
+     * first use and reused for the lifetime of the thread.
+     */
+    public static EvaluationContext current() {
+        return CONTEXTS.get();
+    }
+
+    /**
+     * @param problem The problem to evaluate moves against
+     * @return This thread's incremental evaluator for the problem, reusing
+     * its row caches while the problem stays the same
+     */
+    IncrementalEvaluator incremental(CarPricePrediction problem) {
+        if (incremental == null || incremental.problem() != problem) {
+            incremental = new IncrementalEvaluator(problem, counters);
+        }
+        return incremental;
+    }
+
+    /**
+     * @return The rows scored by bounded and incremental evaluations on this thread
+     */
+    public long rowsScored() {
+        return counters.scored;
+    }
+
+    /**
+     * @return The rows bounded evaluations on this thread skipped because the
+     * candidate could no longer beat its threshold
+     */
+    public long rowsSkipped() {
+        return counters.skipped;
+    }
+
+    /**
+     * @return The rows scored by bounded and incremental evaluations on all threads. Counts
+     * from threads still evaluating may be slightly behind
+     */
+    public static long totalRowsScored() {
+        return TOTAL_SCORED.sum();
+    }
+
+    /**
+     * @return The rows skipped by bounded evaluations on all threads. Counts
+     * from threads still evaluating may be slightly behind
+     */
+    public static long totalRowsSkipped() {
+        return TOTAL_SKIPPED.sum();
+    }
+}
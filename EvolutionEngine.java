@@ -0,0 +1,538 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * Generational evolutionary algorithm whose state belongs to the instance.
+ * Each engine holds its own configuration, random number generator,
+ * population and best solution, so independent runs can execute
+ * concurrently in one JVM. Subclasses decide how each offspring is
+ * improved before it joins the next generation.
+ * The population is stored struct-of-arrays style: one flat genome matrix,
+ * member i at genomes[i * genomeLength, (i + 1) * genomeLength), beside a
+ * fitness column. Offspring are bred straight into a second pair of buffers
+ * that is swapped with the first each generation, so a generation allocates
+ * nothing once the engine is initialised.
+ * Random numbers come from per-generation streams derived from the seed:
+ * initialisation draws from stream 0 and generation g from stream g, so
+ * the random sequence of any generation can be recreated from the seed and
+ * generation number alone. The engine's generator is moved to each stream
+ * in place rather than replaced, keeping the generation allocation free.
+ * That is also why a checkpoint needs no generator state: a run resumed
+ * from the checkpoint of generation g continues exactly as the original
+ * run did.
+ * A run ends after numberOfGenerations generations or earlier when one of
+ * the configured Termination criteria holds; stopReason() says which.
+ */
+public abstract class EvolutionEngine {
+    final EngineConfig config;
+    final RandomStreams.Generator random; // repositioned, never replaced, so generations do not allocate it
+    int generation; // generations evolved since Initialise
+    final int numberOfParents;
+    final int numberOfGenerations;
+    final float offspringMutationChance;
+    final int genomeLength = CarPricePrediction.N_PARAMETERS;
+    CarPricePrediction trainingProblem;
+    double[] genomes; // member i at genomes[i * genomeLength]
+    double[] fitness; // MSE of each member of genomes, kept in step by EvaluatePopulation
+    private double[] offspringGenomes;
+    private double[] offspringFitness;
+    private final int[] parentIndices;
+    final double[] bestPop;
+    double bestCost;
+    double validationError;
+    double[] bestCosts;
+    long evaluationsSaved; // tournament slots answered from fitness instead of evaluate
+    long[] evaluationsSavedPerGeneration;
+    long evaluations; // fitness evaluations used since Initialise, see Termination
+    long runStart; // System.nanoTime() at Initialise or Resume, which the time limit counts from
+    StopReason stopReason;
+    private double bestSoFar; // lowest bestCost since Initialise, for the stagnation window
+    private int generationsSinceImprovement;
+
+    protected EvolutionEngine(EngineConfig config) {
+        if (config.numberOfParents() < 4 || config.numberOfParents() % 2 != 0) {
+            throw new IllegalArgumentException("The number of parents must be even and at least 4.");
+        }
+        this.config = config;
+        this.random = RandomStreams.stream(config.seed(), 0);
+        this.numberOfParents = config.numberOfParents();
+        this.numberOfGenerations = config.numberOfGenerations();
+        this.offspringMutationChance = config.offspringMutationChance();
+        this.parentIndices = new int[numberOfParents];
+        this.bestPop = new double[genomeLength];
+    }
+    /*
+     * Runs the evolutionary algorithm and returns its duration in milliseconds
+     */
+    public long main() throws IOException {
+        long startTime = System.nanoTime();
+        CheckpointPolicy checkpoints = config.checkpoint();
+        Path checkpointFile = checkpoints.directory() == null ? null
+                : checkpoints.file(getClass(), config.seed());
+        ByteBuffer saved = checkpoints.resume() ? Checkpointer.read(checkpointFile) : null;
+        if (saved == null) {
+            Initialise(DatasetRegistry.get("train"));
+        } else {
+            Resume(DatasetRegistry.get("train"), saved);
+        }
+        try (Checkpointer checkpointer = checkpoints.everyGenerations() > 0
+                ? new Checkpointer(checkpointFile) : null) {
+            // loop through generations until a termination criterion holds
+            while ((stopReason = CheckTermination()) == null) {
+                int i = generation;
+                long savedBefore = evaluationsSaved;
+                EvolvePopulation();
+                bestCosts[i] = bestCost;
+                evaluationsSavedPerGeneration[i] = evaluationsSaved - savedBefore;
+                //System.out.printf("Generation %d has recorded " +
+                // "a best training error of: %f%n", i+1, bestCost);
+                if (checkpointer != null && generation % checkpoints.everyGenerations() == 0) {
+                    long captureStart = System.nanoTime();
+                    ByteBuffer checkpoint = Checkpoint();
+                    Metrics.CHECKPOINT_CAPTURE.record(System.nanoTime() - captureStart);
+                    checkpointer.submit(checkpoint);
+                }
+            }
+        }
+        long endTime = System.nanoTime();
+        long duration = (endTime - startTime) / 1000000;
+        // Check the MSE of the best parameters on the validation problem.
+        var validation_problem = DatasetRegistry.get("test");
+        validationError = validation_problem.evaluate(bestPop);
+        //System.out.printf("Validation error of best solution " +
+        // "found while training: %f%n", validationError);
+        return duration;
+    }
+    /**
+     * Checks the stopping criteria in the order StopReason declares them
+     * @return The first criterion that holds, or null to keep evolving
+     */
+    StopReason CheckTermination() {
+        Termination termination = config.termination();
+        if (generation >= numberOfGenerations) {
+            return StopReason.GENERATIONS;
+        }
+        if (EvaluationsExhausted(evaluations)) {
+            return StopReason.EVALUATIONS;
+        }
+        if (DeadlinePassed()) {
+            return StopReason.DEADLINE;
+        }
+        if (termination.stagnationGenerations() > 0
+                && generationsSinceImprovement >= termination.stagnationGenerations()) {
+            return StopReason.STAGNATION;
+        }
+        if (termination.minDiversity() > 0 && Diversity() < termination.minDiversity()) {
+            return StopReason.DIVERSITY;
+        }
+        return null;
+    }
+    /**
+     * @param used The fitness evaluations used so far
+     * @return Whether they reach the evaluation budget of the Termination criteria
+     */
+    boolean EvaluationsExhausted(long used) {
+        long budget = config.termination().maxEvaluations();
+        return budget > 0 && used >= budget;
+    }
+    /**
+     * @return Whether the time limit of the Termination criteria has passed
+     * since the run was initialised or resumed
+     */
+    boolean DeadlinePassed() {
+        long limit = config.termination().timeLimitMillis();
+        return limit > 0 && (System.nanoTime() - runStart) / 1000000 >= limit;
+    }
+    /**
+     * Measures how spread out the population is
+     * @return The standard deviation of each parameter across the
+     * population, averaged over the parameters
+     */
+    double Diversity() {
+        double total = 0;
+        for (int j = 0; j < genomeLength; j++) {
+            double mean = 0;
+            for (int i = 0; i < numberOfParents; i++) mean += genomes[i * genomeLength + j];
+            mean /= numberOfParents;
+            double variance = 0;
+            for (int i = 0; i < numberOfParents; i++) {
+                double d = genomes[i * genomeLength + j] - mean;
+                variance += d * d;
+            }
+            total += Math.sqrt(variance / numberOfParents);
+        }
+        return total / genomeLength;
+    }
+    /**
+     * Creates and evaluates a random initial population
+     * @param trainingProblem The prediction class
+     */
+    void Initialise(CarPricePrediction trainingProblem) {
+        runStart = System.nanoTime();
+        Attach(trainingProblem);
+        generation = 0;
+        evaluations = 0;
+        stopReason = null;
+        random.reseed(config.seed(), 0);
+        genomes = new double[numberOfParents * genomeLength];
+        fitness = new double[numberOfParents];
+        offspringGenomes = new double[numberOfParents * genomeLength];
+        offspringFitness = new double[numberOfParents];
+        // create set of randomly generated parents
+        InitialisePopulation(CarPricePrediction.bounds());
+        EvaluatePopulation();
+        bestSoFar = bestCost;
+        generationsSinceImprovement = 0;
+    }
+    /**
+     * Restores the state saved by Checkpoint() in place of Initialise, so the
+     * run continues from the generation after the checkpoint. The time limit
+     * of the Termination criteria counts from the resumed start only
+     * @param trainingProblem The prediction class
+     * @param in The checkpoint payload
+     * @throws IOException If the checkpoint belongs to another algorithm,
+     * seed or population shape, or to other subclass settings
+     */
+    void Resume(CarPricePrediction trainingProblem, ByteBuffer in) throws IOException {
+        runStart = System.nanoTime();
+        Attach(trainingProblem);
+        byte[] algorithm = new byte[in.getInt()];
+        in.get(algorithm);
+        long seed = in.getLong();
+        int parents = in.getInt();
+        int length = in.getInt();
+        int generations = in.getInt();
+        if (!getClass().getName().equals(new String(algorithm, StandardCharsets.UTF_8)) || seed != config.seed()
+                || parents != numberOfParents || length != genomeLength || generations != numberOfGenerations) {
+            throw new IOException("The checkpoint was written by a different run.");
+        }
+        stopReason = null;
+        genomes = new double[numberOfParents * genomeLength];
+        fitness = new double[numberOfParents];
+        offspringGenomes = new double[numberOfParents * genomeLength];
+        offspringFitness = new double[numberOfParents];
+        generation = in.getInt();
+        evaluations = in.getLong();
+        evaluationsSaved = in.getLong();
+        bestCost = in.getDouble();
+        bestSoFar = in.getDouble();
+        generationsSinceImprovement = in.getInt();
+        in.asDoubleBuffer().get(genomes).get(fitness).get(bestPop).get(bestCosts);
+        in.position(in.position() + (genomes.length + fitness.length + bestPop.length + bestCosts.length)
+                * Double.BYTES);
+        in.asLongBuffer().get(evaluationsSavedPerGeneration);
+        in.position(in.position() + evaluationsSavedPerGeneration.length * Long.BYTES);
+        ReadState(in);
+        random.reseed(config.seed(), generation);
+    }
+    /**
+     * Captures everything needed to continue the run after the current
+     * generation: the population and its fitness, the best solution, the
+     * counters behind the termination criteria and the subclass's state
+     * @return The state as a little-endian buffer positioned at its start
+     */
+    ByteBuffer Checkpoint() {
+        byte[] algorithm = getClass().getName().getBytes(StandardCharsets.UTF_8);
+        int doubles = genomes.length + fitness.length + bestPop.length + bestCosts.length;
+        ByteBuffer out = ByteBuffer.allocate(Integer.BYTES + algorithm.length + Long.BYTES + 5 * Integer.BYTES
+                + 4 * Long.BYTES + doubles * Double.BYTES + evaluationsSavedPerGeneration.length * Long.BYTES
+                + StateBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(algorithm.length).put(algorithm).putLong(config.seed())
+                .putInt(numberOfParents).putInt(genomeLength).putInt(numberOfGenerations)
+                .putInt(generation).putLong(evaluations).putLong(evaluationsSaved)
+                .putDouble(bestCost).putDouble(bestSoFar).putInt(generationsSinceImprovement);
+        out.asDoubleBuffer().put(genomes).put(fitness).put(bestPop).put(bestCosts);
+        out.position(out.position() + doubles * Double.BYTES);
+        out.asLongBuffer().put(evaluationsSavedPerGeneration);
+        out.position(out.position() + evaluationsSavedPerGeneration.length * Long.BYTES);
+        WriteState(out);
+        return out.flip();
+    }
+    /**
+     * @return The size of the state WriteState saves
+     */
+    int StateBytes() {
+        return 0;
+    }
+    /**
+     * Saves state a subclass carries between generations into a checkpoint
+     * @param out The checkpoint, with StateBytes() bytes left
+     */
+    void WriteState(ByteBuffer out) {
+    }
+    /**
+     * Restores the state saved by WriteState
+     * @param in The checkpoint, positioned where WriteState began
+     * @throws IOException If the state does not fit this engine's settings
+     */
+    void ReadState(ByteBuffer in) throws IOException {
+    }
+    /**
+     * Sets the problem the engine's operators and local search work on
+     * without creating a population, for callers that manage the population
+     * themselves
+     * @param trainingProblem The prediction class
+     */
+    void Attach(CarPricePrediction trainingProblem) {
+        this.trainingProblem = trainingProblem;
+        bestCosts = new double[numberOfGenerations];
+        evaluationsSavedPerGeneration = new long[numberOfGenerations];
+    }
+    /**
+     * Creates offspring from each pair of parents directly in the offspring
+     * buffer, mutates each offspring in place, improves the whole brood,
+     * then swaps the buffers so the offspring become the population. With
+     * ea.metrics enabled each phase is timed and reported to Metrics
+     */
+    void EvolvePopulation() {
+        long[] times = Metrics.ENABLED ? new long[5] : null;
+        long allocatedBefore = 0;
+        long evaluationsBefore = evaluations;
+        if (Metrics.ENABLED) {
+            allocatedBefore = Metrics.allocatedBytes();
+            times[0] = System.nanoTime();
+        }
+        generation++;
+        random.reseed(config.seed(), generation);
+        SelectParents(fitness, parentIndices);
+        if (Metrics.ENABLED) times[1] = System.nanoTime();
+        for(int i = 0; i < numberOfParents / 2; i++) {
+            // create offspring
+            int first = 2 * i * genomeLength;
+            int second = first + genomeLength;
+            OnePointCrossover(genomes, parentIndices[2 * i] * genomeLength,
+                    genomes, parentIndices[2 * i + 1] * genomeLength,
+                    offspringGenomes, first, offspringGenomes, second);
+            for (int child = first; child <= second; child += genomeLength) {
+                float mutationRoll = random.nextFloat();
+                // mutate offspring
+                if (mutationRoll < offspringMutationChance) {
+                    SwapMutation(offspringGenomes, child, genomeLength);
+                }
+            }
+        }
+        if (Metrics.ENABLED) times[2] = System.nanoTime();
+        ImproveGeneration(offspringGenomes, numberOfParents);
+        if (Metrics.ENABLED) times[3] = System.nanoTime();
+        double[] swapGenomes = genomes;
+        genomes = offspringGenomes;
+        offspringGenomes = swapGenomes;
+        double[] swapFitness = fitness;
+        fitness = offspringFitness;
+        offspringFitness = swapFitness;
+        EvaluatePopulation();
+        if (bestCost < bestSoFar) {
+            bestSoFar = bestCost;
+            generationsSinceImprovement = 0;
+        } else {
+            generationsSinceImprovement++;
+        }
+        if (Metrics.ENABLED) {
+            times[4] = System.nanoTime();
+            Metrics.recordGeneration(this, times, allocatedBefore, evaluations - evaluationsBefore);
+        }
+    }
+    /**
+     * @return The chances of pattern search and random optimisation used by
+     * the engine's local search, or null when it has none
+     */
+    float[] LocalSearchWeighting() {
+        return null;
+    }
+    /**
+     * Improves every offspring of a generation in place before they join the
+     * next generation. By default each offspring is improved in turn;
+     * subclasses may improve them concurrently
+     * @param genomes The genome matrix holding the offspring
+     * @param count The number of offspring
+     */
+    void ImproveGeneration(double[] genomes, int count) {
+        for (int i = 0; i < count; i++) {
+            ImproveOffspring(genomes, i * genomeLength);
+        }
+    }
+    /**
+     * Improves an offspring in place before it joins the next generation
+     * @param genomes The genome matrix holding the offspring
+     * @param offset The index of the offspring's first parameter
+     */
+    abstract void ImproveOffspring(double[] genomes, int offset);
+    /**
+     * Evaluates the population to find the best MSE from all available
+     * candidates and saves the best. Scoring is delegated to the configured
+     * PopulationEvaluator, so it may run in parallel
+     */
+    void EvaluatePopulation() {
+        config.evaluator().evaluate(genomes, numberOfParents, trainingProblem, fitness);
+        evaluations += numberOfParents;
+        int best = 0;
+        for (int i = 1; i < numberOfParents; i++) {
+            if (fitness[i] < fitness[best]) {
+                best = i;
+            }
+        }
+        bestCost = fitness[best];
+        System.arraycopy(genomes, best * genomeLength, bestPop, 0, genomeLength);
+    }
+    /**
+     * Fills the genome matrix with random members within the given bounds
+     * @param bounds The bounds of the problem
+     */
+    void InitialisePopulation(double[][] bounds) {
+        for(int i = 0; i < numberOfParents; i++) {
+            System.arraycopy(RandomParameters(bounds, random), 0, genomes, i * genomeLength, genomeLength);
+        }
+    }
+    /**
+     * Generates an array of random parameters within the boundary
+     * @param bounds The bounds of the problem
+     * @param r The random instance
+     * @return The array of randomly generated parameters making up one member of the population
+     */
+    public static double[] RandomParameters(double[][] bounds, RandomGenerator r){
+        var parameters = new double[bounds.length];
+        for (int j = 0; j < bounds.length; j++) {
+            parameters[j] = bounds[j][0] + r.nextDouble() * (bounds[j][1] - bounds[j][0]);
+        }
+        return parameters;
+    }
+    /**
+     * Picks two parents by tournament for every pair of offspring
+     * @param _fitness The cached MSE of each member of the population
+     * @param parents Output, parents[2i] and parents[2i + 1] receive the
+     *                indices of the i-th pair of parents
+     */
+    void SelectParents(double[] _fitness, int[] parents) {
+        int tournamentSelection = numberOfParents / 4;
+        tournamentSelection = Math.round(tournamentSelection / 2) * 2;
+        for(int i = 0; i < parents.length; i++) {
+            parents[i] = TournamentSelection(_fitness, tournamentSelection);
+        }
+    }
+    /**
+     * Performs tournament selection on the population and returns the tournament winner
+     * @param _fitness The cached MSE of each member, read instead of re-evaluating
+     * @param tournamentSelection The given number of tournament slots
+     * @return The index of the tournament winner
+     */
+    int TournamentSelection(double[] _fitness, int tournamentSelection) {
+        double bestValue = 1000000000;
+        int bestIndex = 0;
+        for(int i = 0; i < tournamentSelection; i++) {
+            int randomInt = random.nextInt(numberOfParents);
+            double cost = _fitness[randomInt];
+            evaluationsSaved++;
+            if(cost < bestValue) {
+                bestIndex = randomInt;
+                bestValue = cost;
+            }
+        }
+        return bestIndex;
+    }
+    /**
+     * Randomly chooses a cutting point and splits both parents at that
+     * point, writing each half of one parent combined with the other half of
+     * the other parent into the two offspring slots.
+     * @param a The array holding the first parent
+     * @param aOffset The first parent's first parameter
+     * @param b The array holding the second parent
+     * @param bOffset The second parent's first parameter
+     * @param out0 The array receiving the first offspring
+     * @param offset0 The first offspring's first parameter
+     * @param out1 The array receiving the second offspring
+     * @param offset1 The second offspring's first parameter
+     */
+    void OnePointCrossover(double[] a, int aOffset, double[] b, int bOffset,
+                           double[] out0, int offset0, double[] out1, int offset1) {
+        int cutPoint = 1 + random.nextInt(genomeLength - 2);
+        System.arraycopy(b, bOffset, out0, offset0, cutPoint);
+        System.arraycopy(a, aOffset, out1, offset1, cutPoint);
+        System.arraycopy(a, aOffset + cutPoint, out0, offset0 + cutPoint, genomeLength - cutPoint);
+        System.arraycopy(b, bOffset + cutPoint, out1, offset1 + cutPoint, genomeLength - cutPoint);
+    }
+    /**
+     * Performs the swap mutation on a candidate stored in a larger array
+     * @param input The array holding the parameters to be mutated
+     * @param offset The candidate's first parameter
+     * @param length The number of parameters
+     */
+    void SwapMutation(double[] input, int offset, int length) {
+        int val1 = offset + random.nextInt(length);
+        int val2 = offset + random.nextInt(length);
+        var tempVar = input[val1];
+        input[val1] = input[val2];
+        input[val2] = tempVar;
+    }
+    /**
+     * Shuffles an array randomly
+     * @param array The array to be shuffled
+     */
+    void shuffleArray(double[] array)
+    {
+        int index;
+        double temp;
+        for (int i = array.length - 1; i > 0; i--)
+        {
+            index = random.nextInt(i + 1);
+            temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+    }
+    /**
+     * @return The lowest training MSE in the current population
+     */
+    public double bestCost() {
+        return bestCost;
+    }
+    /**
+     * @return A copy of the parameters with the lowest training MSE in the current population
+     */
+    public double[] bestPop() {
+        return bestPop.clone();
+    }
+    /**
+     * @return The test MSE of the best parameters, available once main() has returned
+     */
+    public double validationError() {
+        return validationError;
+    }
+    /**
+     * @return The best training MSE recorded after each generation that ran
+     */
+    public double[] bestCosts() {
+        return Arrays.copyOf(bestCosts, Math.min(generation, bestCosts.length));
+    }
+    /**
+     * @return The tournament slots answered from cached fitness instead of
+     * an evaluation in each generation that ran
+     */
+    public long[] evaluationsSavedPerGeneration() {
+        return Arrays.copyOf(evaluationsSavedPerGeneration,
+                Math.min(generation, evaluationsSavedPerGeneration.length));
+    }
+    /**
+     * @return The criterion that ended the run, available once main() has returned
+     */
+    public StopReason stopReason() {
+        return stopReason;
+    }
+    /**
+     * @return The number of generations evolved since the population was created
+     */
+    public int generations() {
+        return generation;
+    }
+    /**
+     * @return The fitness evaluations used since the population was
+     * created, counted as described by Termination
+     */
+    public long evaluations() {
+        return evaluations;
+    }
+}
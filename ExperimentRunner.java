@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Runs repetitions of an evolutionary algorithm concurrently and summarises
+ * them as they finish.
+ * At most parallelism runs execute at once. Each finished run hands its
+ * per-generation trace and summary to a ResultsWriter straight away and is
+ * folded into running statistics, then discarded, so a sweep of any length
+ * keeps constant memory and its partial results are usable while it is
+ * still going.
+ */
+public class ExperimentRunner {
+    /** Outcome of one finished run. */
+    public record RunResult(int run, long seed, double bestCost, double validationError, long timeMillis,
+                            StopReason stopReason, int generations, long evaluations) {
+    }
+
+    private final int numberRuns;
+    private final int parallelism;
+    private final long baseSeed;
+    private final ResultsWriter results;
+    private final LongFunction<EvolutionEngine> engineFactory;
+    private final RunningStatistics costs = new RunningStatistics();
+    private final RunningStatistics validationErrors = new RunningStatistics();
+    private final RunningStatistics times = new RunningStatistics();
+
+    /**
+     * @param numberRuns The number of repetitions
+     * @param parallelism The most repetitions allowed to run at once
+     * @param baseSeed Run i is seeded with stream i derived from baseSeed
+     * @param results Receives every run's rows; the caller closes it
+     * @param engineFactory Creates the engine for a run from its seed
+     */
+    public ExperimentRunner(int numberRuns, int parallelism, long baseSeed, ResultsWriter results,
+                            LongFunction<EvolutionEngine> engineFactory) {
+        if (numberRuns < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("ExperimentRunner needs at least one run and one thread.");
+        }
+        this.numberRuns = numberRuns;
+        this.parallelism = parallelism;
+        this.baseSeed = baseSeed;
+        this.results = results;
+        this.engineFactory = engineFactory;
+    }
+
+    /**
+     * Runs every repetition, calling onResult on this thread as each one
+     * completes, in completion order
+     * @param onResult Receives each finished run
+     */
+    public void Run(Consumer<RunResult> onResult) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, numberRuns));
+        try {
+            CompletionService<RunResult> completed = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < numberRuns; i++) {
+                int run = i;
+                long seed = RandomStreams.derive(baseSeed, i);
+                completed.submit(() -> {
+                    EvolutionEngine engine = engineFactory.apply(seed);
+                    long time = engine.main();
+                    results.addGenerations(run, seed, engine.bestCosts(), engine.evaluationsSavedPerGeneration());
+                    return new RunResult(run, seed, engine.bestCost(), engine.validationError(), time,
+                            engine.stopReason(), engine.generations(), engine.evaluations());
+                });
+            }
+            for (int i = 0; i < numberRuns; i++) {
+                RunResult result;
+                try {
+                    result = completed.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("An experiment run failed.", e.getCause());
+                }
+                costs.add(result.bestCost());
+                validationErrors.add(result.validationError());
+                times.add(result.timeMillis());
+                results.add(result);
+                onResult.accept(result);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return Statistics of the best training MSE of the runs finished so far
+     */
+    public RunningStatistics costs() {
+        return costs;
+    }
+
+    /**
+     * @return Statistics of the test MSE of the runs finished so far
+     */
+    public RunningStatistics validationErrors() {
+        return validationErrors;
+    }
+
+    /**
+     * @return Statistics of the duration in milliseconds of the runs finished so far
+     */
+    public RunningStatistics times() {
+        return times;
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates a population by recursively splitting it into ranges on a
+ * fork/join pool.
+ */
+final class ForkJoinEvaluator implements PopulationEvaluator {
+    /** Ranges at or below this many candidates are evaluated directly. */
+    private static final int THRESHOLD = 16;
+    private final ForkJoinPool pool;
+
+    ForkJoinEvaluator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void evaluate(double[][] population, CarPricePrediction problem, double[] fitness) {
+        pool.invoke(new EvaluateRange(population, null, problem, fitness, 0, population.length));
+    }
+
+    @Override
+    public void evaluate(double[] genomes, int count, CarPricePrediction problem, double[] fitness) {
+        pool.invoke(new EvaluateRange(null, genomes, problem, fitness, 0, count));
+    }
+
+    private static final class EvaluateRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final double[][] population;
+        private final double[] genomes;
+        private final CarPricePrediction problem;
+        private final double[] fitness;
+        private final int from;
+        private final int to;
+
+        EvaluateRange(double[][] population, double[] genomes, CarPricePrediction problem,
+                      double[] fitness, int from, int to) {
+            this.population = population;
+            this.genomes = genomes;
+            this.problem = problem;
+            this.fitness = fitness;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                if (population != null) {
+                    problem.evaluateBatch(population, from, to, fitness, EvaluationContext.current());
+                } else {
+                    problem.evaluateBatch(genomes, from, to, fitness, EvaluationContext.current());
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new EvaluateRange(population, genomes, problem, fitness, from, mid),
+                    new EvaluateRange(population, genomes, problem, fitness, mid, to));
+        }
+    }
+}
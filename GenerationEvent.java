@@ -0,0 +1,49 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event recorded for every generation while metrics are enabled, so a
+ * flight recording shows each generation's timing and progress next to GC
+ * and JIT activity. It is committed as the generation ends; the phase
+ * timespans add up to the generation's wall time.
+ */
+@Name("ea.Generation")
+@Label("Generation")
+@Category("Evolutionary Algorithm")
+@Description("One generation of an evolutionary algorithm run")
+final class GenerationEvent extends Event {
+    @Label("Algorithm")
+    String algorithm;
+    @Label("Seed")
+    long seed;
+    @Label("Generation")
+    int generation;
+    @Label("Evaluations")
+    long evaluations;
+    @Label("Best Cost")
+    double bestCost;
+    @Label("Mean Cost")
+    double meanCost;
+    @Label("Diversity")
+    double diversity;
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+    @Label("Select Parents")
+    @Timespan
+    long selectNanos;
+    @Label("Breed")
+    @Timespan
+    long breedNanos;
+    @Label("Local Search")
+    @Timespan
+    long improveNanos;
+    @Label("Evaluate Population")
+    @Timespan
+    long evaluateNanos;
+}
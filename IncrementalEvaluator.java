@@ -0,0 +1,444 @@
+/**
+ * Scores single-coordinate moves away from a base solution without
+ * recomputing the whole forward pass.
+ * The hidden layer pre-activation of every row is cached for the base
+ * parameters. Changing one hidden weight or bias only shifts one hidden
+ * unit's pre-activation by input * delta, and changing an output weight or
+ * bias leaves them all untouched, so a move costs O(rows) instead of
+ * O(rows * N_INPUTS).
+ * Rows are summed in the order used for bounded scoring, so every cost
+ * this evaluator reports is summed the same way and a move that changes
+ * nothing ties exactly with the base. By default that is dataset order,
+ * and the cost of the base solution after reset() is bit-identical to
+ * CarPricePrediction::evaluate. Committed moves update the cached
+ * pre-activations by addition, so the cost may drift from a full evaluation
+ * in the last few bits until the next reset().
+ * A mini-batch of rows can be set with sample(). Moves can then be
+ * estimated on those rows alone, and moves kept on an estimate leave the
+ * full cost to be recomputed the next time cost() is asked for.
+ * The IfBelow variants and the threshold arguments stop scoring once the
+ * squared errors summed so far show the result cannot beat the threshold.
+ * They then return a value that is not below the threshold. Full-data
+ * bounded scoring checks the threshold once per block of rows. With
+ * -Dea.hardestFirst=true it visits the blocks the base solution predicts
+ * worst first, so it gives up a little sooner, at the price of costs that
+ * are summed in another order and so no longer bit-identical to
+ * CarPricePrediction::evaluate. Rows are reordered a block at a time so
+ * scans within a block stay sequential. Rows scored and
+ * skipped are counted in the owning EvaluationContext.
+ * Instances hold mutable state and must only be used by one thread.
+ */
+final class IncrementalEvaluator {
+    private static final int N_INPUTS = CarPricePrediction.N_INPUTS;
+    private static final int HIDDEN_LAYER_SIZE = CarPricePrediction.HIDDEN_LAYER_SIZE;
+    private static final int N_WEIGHTS = CarPricePrediction.N_WEIGHTS;
+    private static final int N_HIDDEN_WEIGHTS = N_INPUTS * HIDDEN_LAYER_SIZE;
+    static final boolean HARDEST_FIRST = Boolean.parseBoolean(System.getProperty("ea.hardestFirst", "false"));
+
+    private final CarPricePrediction problem;
+    private final double[] features;
+    private final double[] targets;
+    private final int rows;
+    /** Hidden pre-activation of unit u on row r, stored at pre[u * rows + r]. */
+    private final double[] pre;
+    private final double[] base = new double[CarPricePrediction.N_PARAMETERS];
+    /** Rows per block of the bounded-scoring order. */
+    private static final int BLOCK = 64;
+    /** First row of each block in the order scoring visits them, rebuilt by reset(). */
+    private final int[] blockOrder;
+    private final double[] blockErrors;
+    private final EvaluationContext.RowCounters counters;
+    private long evaluations;
+    private double cost;
+    private double resetCost; // cost of the base solution as reset() found it
+    private boolean costStale;
+    /** Rows of the mini-batch in ascending order, or null to estimate on every row. */
+    private int[] sampleRows;
+    private double sampleCost;
+    private boolean sampleStale;
+
+    IncrementalEvaluator(CarPricePrediction problem, EvaluationContext.RowCounters counters) {
+        this.problem = problem;
+        this.features = problem.features();
+        this.targets = problem.targets();
+        this.rows = problem.rows();
+        this.pre = new double[HIDDEN_LAYER_SIZE * rows];
+        int blocks = (rows + BLOCK - 1) / BLOCK;
+        this.blockOrder = new int[blocks];
+        this.blockErrors = new double[blocks];
+        this.counters = counters;
+        for (int b = 0; b < blocks; b++) blockOrder[b] = b * BLOCK;
+    }
+
+    /**
+     * @return The problem this evaluator scores against
+     */
+    CarPricePrediction problem() {
+        return problem;
+    }
+
+    /**
+     * @return The number of scoring passes made so far, each counted as one
+     * fitness evaluation however many rows it covered
+     */
+    long evaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Sets the rows that estimateMove and commitMoveEstimated score on. The
+     * array is read, not copied, so it must not change while it is in use.
+     * @param rows Row indices in ascending order, or null for every row
+     */
+    void sample(int[] rows) {
+        sampleRows = rows;
+        sampleStale = true;
+    }
+
+    /**
+     * @return Whether moves are estimated on a mini-batch rather than every row
+     */
+    boolean sampling() {
+        return sampleRows != null;
+    }
+
+    /**
+     * Makes the given parameters the base solution and caches its hidden
+     * layer pre-activations with a full forward pass.
+     * @param parameters The ANN parameters to use as the base solution
+     * @return The MSE of the base solution
+     */
+    double reset(double[] parameters) {
+        System.arraycopy(parameters, 0, base, 0, base.length);
+        for (int u = 0; u < HIDDEN_LAYER_SIZE; u++) {
+            int weight_pos = u * N_INPUTS;
+            double bias = base[N_WEIGHTS + u];
+            for (int r = 0, offset = 0; r < rows; r++, offset += N_INPUTS) {
+                double weighted_sum = bias;
+                for (int j = 0; j < N_INPUTS; j++) {
+                    weighted_sum += features[offset + j] * base[weight_pos + j];
+                }
+                pre[u * rows + r] = weighted_sum;
+            }
+        }
+        if (HARDEST_FIRST) orderHardestFirst();
+        cost = score(-1, -1, 0.0, base);
+        resetCost = cost;
+        costStale = false;
+        sampleStale = true;
+        return cost;
+    }
+
+    /**
+     * @return The MSE reset() computed for the base solution, before any
+     * move was kept
+     */
+    double resetCost() {
+        return resetCost;
+    }
+
+    /**
+     * @param threshold The cost to compare against
+     * @return Whether the MSE of the current base solution is below
+     * threshold, scoring it with a bound if moves were kept on an estimate
+     */
+    boolean costBelow(double threshold) {
+        if (costStale) {
+            double bounded = scoreIfBelow(-1, -1, 0.0, base, threshold);
+            if (bounded >= threshold) return false;
+            cost = bounded;
+            costStale = false;
+        }
+        return cost < threshold;
+    }
+
+    /**
+     * @return The MSE of the current base solution, recomputed from the
+     * cached pre-activations if moves were kept on an estimate
+     */
+    double cost() {
+        if (costStale) {
+            cost = score(-1, -1, 0.0, base);
+            costStale = false;
+        }
+        return cost;
+    }
+
+    /**
+     * @return The MSE of the current base solution on the mini-batch, or on
+     * every row when no mini-batch is set
+     */
+    double sampleCost() {
+        if (sampleRows == null) return cost();
+        if (sampleStale) {
+            sampleCost = scoreSample(-1, -1, 0.0, base, Double.POSITIVE_INFINITY);
+            sampleStale = false;
+        }
+        return sampleCost;
+    }
+
+    /**
+     * Estimates the cost of the base solution with one parameter replaced
+     * on the mini-batch alone, leaving the base unchanged.
+     * @param index The parameter to change
+     * @param value The new value of that parameter
+     * @param threshold The estimate the move needs to beat
+     * @return The mini-batch MSE of the modified solution, or a value not
+     * below threshold
+     */
+    double estimateMove(int index, double value, double threshold) {
+        if (sampleRows == null) return evaluateMoveIfBelow(index, value, threshold);
+        double old = base[index];
+        base[index] = value;
+        double moved = scoreSample(hiddenUnit(index), inputColumn(index), value - old, base, threshold);
+        base[index] = old;
+        return moved;
+    }
+
+    /**
+     * Applies a single parameter change to the base solution, scoring it on
+     * the mini-batch alone.
+     * @param index The parameter to change
+     * @param value The new value of that parameter
+     * @param threshold The estimate the new base needs to beat
+     * @return The mini-batch MSE of the new base solution, or a value not
+     * below threshold
+     */
+    double commitMoveEstimated(int index, double value, double threshold) {
+        if (sampleRows == null) return commitMoveIfBelow(index, value, threshold);
+        shiftBase(index, value);
+        costStale = true;
+        double estimate = scoreSample(-1, -1, 0.0, base, threshold);
+        sampleStale = estimate >= threshold;
+        sampleCost = estimate;
+        return estimate;
+    }
+
+    /**
+     * Applies a move that was just scored by estimateMove, reusing its
+     * estimate. The full cost is recomputed when next asked for.
+     * @param index The parameter to change
+     * @param value The new value of that parameter
+     * @param estimatedCost The value estimateMove(index, value) returned
+     */
+    void acceptEstimatedMove(int index, double value, double estimatedCost) {
+        if (sampleRows == null) {
+            acceptMove(index, value, estimatedCost);
+            return;
+        }
+        shiftBase(index, value);
+        costStale = true;
+        sampleCost = estimatedCost;
+        sampleStale = false;
+    }
+
+    /**
+     * Scores the base solution with one parameter replaced, leaving the base
+     * unchanged.
+     * @param index The parameter to change
+     * @param value The new value of that parameter
+     * @return The MSE of the modified solution
+     */
+    double evaluateMove(int index, double value) {
+        double old = base[index];
+        base[index] = value;
+        double moved = score(hiddenUnit(index), inputColumn(index), value - old, base);
+        base[index] = old;
+        return moved;
+    }
+
+    /**
+     * evaluateMove that gives up once the move cannot beat threshold
+     * @param index The parameter to change
+     * @param value The new value of that parameter
+     * @param threshold The cost the move needs to beat
+     * @return The MSE of the modified solution, or a value not below threshold
+     */
+    double evaluateMoveIfBelow(int index, double value, double threshold) {
+        double old = base[index];
+        base[index] = value;
+        double moved = scoreIfBelow(hiddenUnit(index), inputColumn(index), value - old, base, threshold);
+        base[index] = old;
+        return moved;
+    }
+
+    /**
+     * commitMove that gives up scoring once the new base cannot beat
+     * threshold, leaving its cost to be recomputed when next asked for
+     * @param index The parameter to change
+     * @param value The new value of that parameter
+     * @param threshold The cost the new base needs to beat
+     * @return The MSE of the new base solution, or a value not below threshold
+     */
+    double commitMoveIfBelow(int index, double value, double threshold) {
+        shiftBase(index, value);
+        double moved = scoreIfBelow(-1, -1, 0.0, base, threshold);
+        costStale = moved >= threshold;
+        cost = moved;
+        sampleStale = true;
+        return moved;
+    }
+
+    /**
+     * Applies a single parameter change to the base solution.
+     * @param index The parameter to change
+     * @param value The new value of that parameter
+     * @return The MSE of the new base solution
+     */
+    double commitMove(int index, double value) {
+        shiftBase(index, value);
+        cost = score(-1, -1, 0.0, base);
+        costStale = false;
+        sampleStale = true;
+        return cost;
+    }
+
+    /**
+     * Applies a move that was just scored by evaluateMove, reusing its cost
+     * rather than scoring the new base again. The cached pre-activations are
+     * shifted with the same arithmetic evaluateMove used, so the stored cost
+     * is exact for the new base.
+     * @param index The parameter to change
+     * @param value The new value of that parameter
+     * @param movedCost The value evaluateMove(index, value) returned
+     */
+    void acceptMove(int index, double value, double movedCost) {
+        shiftBase(index, value);
+        cost = movedCost;
+        costStale = false;
+        sampleStale = true;
+    }
+
+    private void shiftBase(int index, double value) {
+        int unit = hiddenUnit(index);
+        if (unit >= 0) {
+            int column = inputColumn(index);
+            double delta = value - base[index];
+            int start = unit * rows;
+            for (int r = 0, offset = 0; r < rows; r++, offset += N_INPUTS) {
+                pre[start + r] += (column < 0 ? 1.0 : features[offset + column]) * delta;
+            }
+        }
+        base[index] = value;
+    }
+
+    /**
+     * Computes the MSE from the cached pre-activations, shifting one hidden
+     * unit's pre-activation by input[column] * delta (or by delta alone for
+     * a bias, column -1). unit -1 applies no shift.
+     */
+    private double score(int unit, int column, double delta, double[] parameters) {
+        return scoreIfBelow(unit, column, delta, parameters, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * score() that visits the blocks of rows in bounded-scoring order and
+     * stops after the first block that shows the result cannot be below
+     * threshold
+     */
+    private double scoreIfBelow(int unit, int column, double delta, double[] parameters, double threshold) {
+        evaluations++;
+        int output_bias = N_WEIGHTS + HIDDEN_LAYER_SIZE;
+        double limit = threshold * rows;
+        double mse = 0.0;
+        int scored = 0;
+        for (int start : blockOrder) {
+            int end = Math.min(start + BLOCK, rows);
+            for (int r = start, offset = start * N_INPUTS; r < end; r++, offset += N_INPUTS) {
+                double output = parameters[output_bias];
+                for (int u = 0; u < HIDDEN_LAYER_SIZE; u++) {
+                    double weighted_sum = pre[u * rows + r];
+                    if (u == unit) {
+                        weighted_sum += (column < 0 ? 1.0 : features[offset + column]) * delta;
+                    }
+                    output += (weighted_sum < 0 ? 0 : weighted_sum) * parameters[N_HIDDEN_WEIGHTS + u];
+                }
+                double error = targets[r] - output;
+                mse += error * error;
+            }
+            scored += end - start;
+            if (mse >= limit) {
+                counters.add(scored, rows - scored);
+                return Math.max(mse / rows, threshold);
+            }
+        }
+        counters.add(rows, 0);
+        mse /= rows;
+        return mse;
+    }
+
+    /**
+     * Moves the blocks of rows the base solution predicts worse than its
+     * mean block error to the front of the bounded-scoring order, in one
+     * pass
+     */
+    private void orderHardestFirst() {
+        int output_bias = N_WEIGHTS + HIDDEN_LAYER_SIZE;
+        int blocks = blockOrder.length;
+        double mean = 0.0;
+        for (int b = 0; b < blocks; b++) {
+            double blockError = 0.0;
+            for (int r = b * BLOCK; r < Math.min((b + 1) * BLOCK, rows); r++) {
+                double output = base[output_bias];
+                for (int u = 0; u < HIDDEN_LAYER_SIZE; u++) {
+                    double weighted_sum = pre[u * rows + r];
+                    output += (weighted_sum < 0 ? 0 : weighted_sum) * base[N_HIDDEN_WEIGHTS + u];
+                }
+                double error = targets[r] - output;
+                blockError += error * error;
+            }
+            blockErrors[b] = blockError;
+            mean += blockError;
+        }
+        mean /= blocks;
+        int hard = 0;
+        int easy = blocks;
+        for (int b = 0; b < blocks; b++) {
+            if (blockErrors[b] > mean) blockOrder[hard++] = b * BLOCK;
+            else blockOrder[--easy] = b * BLOCK;
+        }
+    }
+
+    /**
+     * score() restricted to the rows of the mini-batch, stopping once the
+     * result cannot be below threshold
+     */
+    private double scoreSample(int unit, int column, double delta, double[] parameters, double threshold) {
+        evaluations++;
+        int output_bias = N_WEIGHTS + HIDDEN_LAYER_SIZE;
+        double limit = threshold * sampleRows.length;
+        double mse = 0.0;
+        for (int k = 0; k < sampleRows.length; k++) {
+            int r = sampleRows[k];
+            double output = parameters[output_bias];
+            for (int u = 0; u < HIDDEN_LAYER_SIZE; u++) {
+                double weighted_sum = pre[u * rows + r];
+                if (u == unit) {
+                    weighted_sum += (column < 0 ? 1.0 : features[r * N_INPUTS + column]) * delta;
+                }
+                output += (weighted_sum < 0 ? 0 : weighted_sum) * parameters[N_HIDDEN_WEIGHTS + u];
+            }
+            double error = targets[r] - output;
+            mse += error * error;
+            if (mse >= limit) {
+                counters.add(k + 1, sampleRows.length - k - 1);
+                return Math.max(mse / sampleRows.length, threshold);
+            }
+        }
+        counters.add(sampleRows.length, 0);
+        mse /= sampleRows.length;
+        return mse;
+    }
+
+    /** @return The hidden unit whose pre-activation depends on the parameter, or -1 */
+    private static int hiddenUnit(int index) {
+        if (index < N_HIDDEN_WEIGHTS) return index / N_INPUTS;
+        if (index >= N_WEIGHTS && index < N_WEIGHTS + HIDDEN_LAYER_SIZE) return index - N_WEIGHTS;
+        return -1;
+    }
+
+    /** @return The input column multiplying the parameter, or -1 for biases and output weights */
+    private static int inputColumn(int index) {
+        return index < N_HIDDEN_WEIGHTS ? index % N_INPUTS : -1;
+    }
+}
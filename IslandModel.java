@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Island model version of the evolutionary algorithms.
+ * Several sub-populations, each an independent EvolutionEngine, evolve on
+ * their own threads. Every migrationInterval
+ * generations an island sends copies of its best migrantCount members to the
+ * next island in a ring through a lock-free queue; the receiver swaps them
+ * in for its worst members at the start of its next generation, so islands
+ * never wait for each other.
+ */
+public class IslandModel {
+    /** A copy of an individual sent between islands, with its known cost. */
+    record Migrant(double[] genome, double cost) {
+    }
+
+    private final int islandCount;
+    private final int migrationInterval;
+    private final int migrantCount;
+    private final IntFunction<EvolutionEngine> engineFactory;
+    private final List<ConcurrentLinkedQueue<Migrant>> inboxes;
+    private final double[] islandBestCosts;
+    private final double[][] islandBestPops;
+    private final double[] generationsPerSecond;
+
+    /**
+     * @param islandCount The number of sub-populations, each run on its own thread
+     * @param migrationInterval The number of generations between migrations
+     * @param migrantCount The number of best members each island sends per migration
+     * @param engineFactory Creates the engine evolving the given island
+     */
+    public IslandModel(int islandCount, int migrationInterval, int migrantCount,
+                       IntFunction<EvolutionEngine> engineFactory) {
+        if (islandCount < 1 || migrationInterval < 1 || migrantCount < 0) {
+            throw new IllegalArgumentException("IslandModel needs at least one island, a positive " +
+                    "migration interval and a non-negative number of migrants.");
+        }
+        this.islandCount = islandCount;
+        this.migrationInterval = migrationInterval;
+        this.migrantCount = migrantCount;
+        this.engineFactory = engineFactory;
+        this.inboxes = new ArrayList<>(islandCount);
+        for (int i = 0; i < islandCount; i++) inboxes.add(new ConcurrentLinkedQueue<>());
+        this.islandBestCosts = new double[islandCount];
+        this.islandBestPops = new double[islandCount][];
+        this.generationsPerSecond = new double[islandCount];
+    }
+
+    /**
+     * Entry point of an island run, e.g.
+     * java -Dea.islands=4 -Dea.memetic=true IslandModel
+     * @param args Unused
+     */
+    public static void main(String[] args) throws IOException {
+        try {
+            System.out.println("Time taken: " + main() + " ms");
+        } finally {
+            // the timers are worth seeing even when an island fails part way through the run
+            String report = Metrics.report();
+            if (!report.isEmpty()) {
+                System.out.println();
+                System.out.print(report);
+            }
+        }
+    }
+
+    /**
+     * Runs the island model configured by the ea.islands, ea.migrationInterval
+     * and ea.migrants system properties, with memetic islands when
+     * ea.memetic is true, and prints each island's best cost and
+     * generations per second
+     * @return The duration of the run in milliseconds
+     */
+    public static long main() throws IOException {
+        long startTime = System.nanoTime();
+        boolean memetic = Boolean.getBoolean("ea.memetic");
+        EngineConfig config = EngineConfig.defaults();
+        var model = new IslandModel(
+                Integer.getInteger("ea.islands", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("ea.migrationInterval", 5),
+                Integer.getInteger("ea.migrants", 2),
+                island -> {
+                    EngineConfig islandConfig = config.withSeed(RandomStreams.derive(config.seed(), island));
+                    return memetic ? new CalcsMain(islandConfig) : new BaselineMain(islandConfig);
+                });
+        model.Run(DatasetRegistry.get("train"), config.numberOfGenerations());
+        long duration = (System.nanoTime() - startTime) / 1000000;
+        for (int i = 0; i < model.islandCount; i++) {
+            System.out.printf("Island %d: best %f at %.1f generations/sec%n",
+                    i, model.islandBestCosts[i], model.generationsPerSecond[i]);
+        }
+        System.out.println("Best cost: " + model.bestCost());
+        return duration;
+    }
+
+    /**
+     * Evolves every island for the given number of generations, one thread
+     * per island, and waits for all of them to finish
+     * @param trainingProblem The prediction class
+     * @param generations The number of generations each island runs
+     */
+    public void Run(CarPricePrediction trainingProblem, int generations) {
+        ExecutorService pool = Executors.newFixedThreadPool(islandCount);
+        try {
+            Future<?>[] islands = new Future<?>[islandCount];
+            for (int i = 0; i < islandCount; i++) {
+                int island = i;
+                islands[i] = pool.submit(() -> EvolveIsland(island, trainingProblem, generations));
+            }
+            for (Future<?> island : islands) island.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Island model run was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("An island failed.", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return The lowest training MSE found by any island
+     */
+    public double bestCost() {
+        double best = Double.MAX_VALUE;
+        for (double cost : islandBestCosts) best = Math.min(best, cost);
+        return best;
+    }
+
+    /**
+     * @return The parameters with the lowest training MSE found by any island
+     */
+    public double[] bestPop() {
+        int best = 0;
+        for (int i = 1; i < islandCount; i++) if (islandBestCosts[i] < islandBestCosts[best]) best = i;
+        return islandBestPops[best];
+    }
+
+    /**
+     * @return The generations per second achieved by each island in the last run
+     */
+    public double[] generationsPerSecond() {
+        return generationsPerSecond.clone();
+    }
+
+    /**
+     * Runs one island: a full generational loop of its engine with
+     * emigration every migrationInterval generations and immigration
+     * whenever migrants have arrived.
+     */
+    private void EvolveIsland(int island, CarPricePrediction trainingProblem, int generations) {
+        long startTime = System.nanoTime();
+        EvolutionEngine engine = engineFactory.apply(island);
+        engine.Initialise(trainingProblem);
+        for (int generation = 1; generation <= generations; generation++) {
+            Immigrate(island, engine);
+            engine.EvolvePopulation();
+            if (generation % migrationInterval == 0 && islandCount > 1) {
+                Emigrate(island, engine);
+            }
+        }
+        Immigrate(island, engine);
+        islandBestCosts[island] = engine.bestCost;
+        islandBestPops[island] = engine.bestPop();
+        generationsPerSecond[island] = generations / ((System.nanoTime() - startTime) / 1e9);
+    }
+
+    /**
+     * Sends copies of the island's best members to the next island in the ring
+     */
+    private void Emigrate(int island, EvolutionEngine engine) {
+        double[] fitness = engine.fitness;
+        int length = engine.genomeLength;
+        boolean[] sent = new boolean[fitness.length];
+        ConcurrentLinkedQueue<Migrant> inbox = inboxes.get((island + 1) % islandCount);
+        for (int m = 0; m < Math.min(migrantCount, fitness.length); m++) {
+            int best = -1;
+            for (int i = 0; i < fitness.length; i++) {
+                if (!sent[i] && (best < 0 || fitness[i] < fitness[best])) best = i;
+            }
+            sent[best] = true;
+            double[] genome = Arrays.copyOfRange(engine.genomes, best * length, (best + 1) * length);
+            inbox.offer(new Migrant(genome, fitness[best]));
+        }
+    }
+
+    /**
+     * Replaces the island's worst members with any migrants that have
+     * arrived, when the migrant is better
+     */
+    private void Immigrate(int island, EvolutionEngine engine) {
+        double[] fitness = engine.fitness;
+        int length = engine.genomeLength;
+        Migrant migrant;
+        ConcurrentLinkedQueue<Migrant> inbox = inboxes.get(island);
+        while ((migrant = inbox.poll()) != null) {
+            int worst = 0;
+            for (int i = 1; i < fitness.length; i++) if (fitness[i] > fitness[worst]) worst = i;
+            if (migrant.cost() < fitness[worst]) {
+                System.arraycopy(migrant.genome(), 0, engine.genomes, worst * length, length);
+                fitness[worst] = migrant.cost();
+                if (migrant.cost() < engine.bestCost) {
+                    engine.bestCost = migrant.cost();
+                    System.arraycopy(migrant.genome(), 0, engine.bestPop, 0, length);
+                }
+            }
+        }
+    }
+}
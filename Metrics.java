@@ -0,0 +1,222 @@
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide instrumentation of the evolutionary algorithms. Enabled with
+ * -Dea.metrics=true; when disabled ENABLED is a constant false, so the
+ * guarded calls on the hot paths are compiled away and cost nothing.
+ * While enabled:
+ * <ul>
+ * <li>counters and timer histograms, built on LongAdder so concurrent
+ * runs and parallel local search threads do not contend, total the work
+ * of every engine in the JVM</li>
+ * <li>every generation of every engine produces a GenerationSnapshot that
+ * is passed to each registered Listener on the engine's thread</li>
+ * <li>every generation commits a GenerationEvent to any running flight
+ * recording</li>
+ * </ul>
+ * Checkpoint timers and sizes, and the surrogate's screening counts and
+ * rank correlation, are recorded whenever those features are in use, since
+ * they cost one update per checkpoint or generation.
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("ea.metrics");
+
+    static final LongAdder EVALUATIONS = new LongAdder();
+    static final LongAdder GENERATIONS = new LongAdder();
+    static final LongAdder PATTERN_SEARCHES = new LongAdder();
+    static final LongAdder RANDOM_OPTIMISATIONS = new LongAdder();
+    static final TimerHistogram GENERATION = new TimerHistogram("generation");
+    static final TimerHistogram SELECT_PARENTS = new TimerHistogram("selectParents");
+    static final TimerHistogram BREED = new TimerHistogram("crossover+mutation");
+    static final TimerHistogram IMPROVE = new TimerHistogram("improveGeneration");
+    static final TimerHistogram EVALUATE = new TimerHistogram("evaluatePopulation");
+    static final TimerHistogram LOCAL_SEARCH = new TimerHistogram("localSearch");
+    static final TimerHistogram CHECKPOINT_CAPTURE = new TimerHistogram("checkpointCapture");
+    static final TimerHistogram CHECKPOINT_WRITE = new TimerHistogram("checkpointWrite");
+    static final LongAdder CHECKPOINT_BYTES = new LongAdder();
+    static final LongAdder SURROGATE_SEARCHED = new LongAdder();
+    static final LongAdder SURROGATE_SCREENED = new LongAdder();
+    static final LongAdder SURROGATE_ESTIMATED_EVALUATIONS_SAVED = new LongAdder();
+    static final DoubleAdder SURROGATE_RANK_CORRELATION = new DoubleAdder(); // summed per generation
+    static final LongAdder SURROGATE_GENERATIONS = new LongAdder();
+
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    /**
+     * State of one engine after one generation.
+     * @param algorithm The engine's class
+     * @param seed The engine's seed
+     * @param generation The generation number, from 1
+     * @param evaluations Fitness evaluations used in this generation
+     * @param evaluationsPerSecond Evaluations over the generation's wall time
+     * @param bestCost The lowest training MSE in the new population
+     * @param meanCost The mean training MSE of the new population
+     * @param diversity The mean per-parameter standard deviation of the population
+     * @param allocatedBytes Bytes allocated by the engine's thread during the
+     *                       generation, -1 when the JVM cannot measure it;
+     *                       parallel local search threads are not included
+     * @param patternWeight The chance of pattern search, NaN without local search
+     * @param randomWeight The chance of random optimisation, NaN without local search
+     * @param selectNanos Time spent selecting parents
+     * @param breedNanos Time spent on crossover and mutation
+     * @param improveNanos Time spent improving offspring
+     * @param evaluateNanos Time spent scoring the new population
+     */
+    public record GenerationSnapshot(String algorithm, long seed, int generation, long evaluations,
+                                     double evaluationsPerSecond, double bestCost, double meanCost,
+                                     double diversity, long allocatedBytes, float patternWeight,
+                                     float randomWeight, long selectNanos, long breedNanos,
+                                     long improveNanos, long evaluateNanos) {
+    }
+
+    /** Receives a snapshot after every generation of every engine. */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the engine's thread, so it should return quickly
+         * @param snapshot The generation that just finished
+         */
+        void onGeneration(GenerationSnapshot snapshot);
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @param listener Receives every snapshot from now on
+     */
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * @param listener A listener added earlier
+     */
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * @return Bytes allocated so far by the calling thread, or -1 when the
+     * JVM cannot measure it
+     */
+    static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Records the timers of one generation, publishes its snapshot and
+     * commits its JFR event. Called by the engine when ENABLED.
+     * @param engine The engine that evolved the generation
+     * @param times System.nanoTime() at the start of the generation and
+     *              after selection, breeding, improvement and evaluation
+     * @param allocatedBefore allocatedBytes() at the start of the generation
+     * @param evaluations Fitness evaluations used in the generation
+     */
+    static void recordGeneration(EvolutionEngine engine, long[] times, long allocatedBefore, long evaluations) {
+        long select = times[1] - times[0];
+        long breed = times[2] - times[1];
+        long improve = times[3] - times[2];
+        long evaluate = times[4] - times[3];
+        long total = times[4] - times[0];
+        GENERATIONS.increment();
+        EVALUATIONS.add(evaluations);
+        SELECT_PARENTS.record(select);
+        BREED.record(breed);
+        IMPROVE.record(improve);
+        EVALUATE.record(evaluate);
+        GENERATION.record(total);
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        double meanCost = 0;
+        for (double cost : engine.fitness) meanCost += cost;
+        meanCost /= engine.fitness.length;
+        double diversity = engine.Diversity();
+        float[] weighting = engine.LocalSearchWeighting();
+        GenerationSnapshot snapshot = new GenerationSnapshot(engine.getClass().getSimpleName(),
+                engine.config.seed(), engine.generation, evaluations, evaluations / (total / 1e9),
+                engine.bestCost, meanCost, diversity, allocated,
+                weighting == null ? Float.NaN : weighting[0], weighting == null ? Float.NaN : weighting[1],
+                select, breed, improve, evaluate);
+        for (Listener listener : LISTENERS) listener.onGeneration(snapshot);
+        GenerationEvent event = new GenerationEvent();
+        if (event.shouldCommit()) {
+            event.algorithm = snapshot.algorithm();
+            event.seed = snapshot.seed();
+            event.generation = snapshot.generation();
+            event.evaluations = evaluations;
+            event.bestCost = snapshot.bestCost();
+            event.meanCost = meanCost;
+            event.diversity = diversity;
+            event.allocatedBytes = allocated;
+            event.selectNanos = select;
+            event.breedNanos = breed;
+            event.improveNanos = improve;
+            event.evaluateNanos = evaluate;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return The process-wide counters and timers, one per line
+     */
+    public static String summary() {
+        StringBuilder out = new StringBuilder();
+        out.append("generations=").append(GENERATIONS.sum())
+                .append(" evaluations=").append(EVALUATIONS.sum())
+                .append(" patternSearches=").append(PATTERN_SEARCHES.sum())
+                .append(" randomOptimisations=").append(RANDOM_OPTIMISATIONS.sum())
+                .append(System.lineSeparator());
+        for (TimerHistogram timer : new TimerHistogram[]{GENERATION, SELECT_PARENTS, BREED, IMPROVE, EVALUATE,
+                LOCAL_SEARCH}) {
+            out.append(timer).append(System.lineSeparator());
+        }
+        return out.append(featureSummary()).toString();
+    }
+
+    /**
+     * @return summary() when metrics are enabled, otherwise only the
+     * surrogate and checkpoint lines, which are recorded either way; empty
+     * when there is nothing to report
+     */
+    public static String report() {
+        return ENABLED ? summary() : featureSummary();
+    }
+
+    /**
+     * @return The surrogate and checkpoint lines, for the features that ran
+     */
+    private static String featureSummary() {
+        StringBuilder out = new StringBuilder();
+        long screenedGenerations = SURROGATE_GENERATIONS.sum();
+        if (screenedGenerations > 0) {
+            out.append("surrogate searched=").append(SURROGATE_SEARCHED.sum())
+                    .append(" screened out=").append(SURROGATE_SCREENED.sum())
+                    .append(" estimated evaluations saved=").append(SURROGATE_ESTIMATED_EVALUATIONS_SAVED.sum())
+                    .append(String.format(" mean rank correlation=%.3f",
+                            SURROGATE_RANK_CORRELATION.sum() / screenedGenerations))
+                    .append(System.lineSeparator());
+        }
+        long checkpoints = CHECKPOINT_WRITE.count();
+        if (checkpoints > 0) {
+            out.append(CHECKPOINT_CAPTURE).append(System.lineSeparator())
+                    .append(CHECKPOINT_WRITE).append(System.lineSeparator())
+                    .append("checkpoint bytes=").append(CHECKPOINT_BYTES.sum() / checkpoints).append(" per write")
+                    .append(System.lineSeparator());
+        }
+        return out.toString();
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Streaming estimate of one quantile using the P-squared algorithm of Jain
+ * and Chlamtac (1985). Keeps five markers regardless of how many values are
+ * added; the first five values are held exactly.
+ */
+final class P2Quantile {
+    private final double p;
+    private final double[] heights = new double[5];
+    private final double[] positions = new double[5];
+    private final double[] desired = new double[5];
+    private final double[] increments = new double[5];
+    private long count;
+
+    /**
+     * @param p The quantile to estimate, between 0 and 1
+     */
+    P2Quantile(double p) {
+        if (p < 0 || p > 1) throw new IllegalArgumentException("Quantile must lie between 0 and 1.");
+        this.p = p;
+        increments[0] = 0;
+        increments[1] = p / 2;
+        increments[2] = p;
+        increments[3] = (1 + p) / 2;
+        increments[4] = 1;
+    }
+
+    /**
+     * @return The quantile being estimated
+     */
+    double quantile() {
+        return p;
+    }
+
+    /**
+     * Adds one observation
+     * @param x The observed value
+     */
+    void add(double x) {
+        if (count < 5) {
+            int i = (int) count++;
+            heights[i] = x;
+            // keep the first observations sorted
+            for (; i > 0 && heights[i - 1] > heights[i]; i--) {
+                double swap = heights[i - 1];
+                heights[i - 1] = heights[i];
+                heights[i] = swap;
+            }
+            if (count == 5) {
+                for (int m = 0; m < 5; m++) {
+                    positions[m] = m + 1;
+                    desired[m] = 1 + 4 * increments[m];
+                }
+            }
+            return;
+        }
+        count++;
+        int k;
+        if (x < heights[0]) {
+            heights[0] = x;
+            k = 0;
+        } else if (x >= heights[4]) {
+            heights[4] = Math.max(heights[4], x);
+            k = 3;
+        } else {
+            k = 0;
+            while (x >= heights[k + 1]) k++;
+        }
+        for (int m = k + 1; m < 5; m++) positions[m]++;
+        for (int m = 0; m < 5; m++) desired[m] += increments[m];
+        for (int m = 1; m < 4; m++) {
+            double d = desired[m] - positions[m];
+            if ((d >= 1 && positions[m + 1] - positions[m] > 1)
+                    || (d <= -1 && positions[m - 1] - positions[m] < -1)) {
+                int sign = d > 0 ? 1 : -1;
+                double candidate = parabolic(m, sign);
+                if (heights[m - 1] < candidate && candidate < heights[m + 1]) {
+                    heights[m] = candidate;
+                } else {
+                    heights[m] = heights[m] + sign * (heights[m + sign] - heights[m])
+                            / (positions[m + sign] - positions[m]);
+                }
+                positions[m] += sign;
+            }
+        }
+    }
+
+    /**
+     * @return The current estimate, exact while fewer than six values have
+     * been added, or NaN when there are none
+     */
+    double estimate() {
+        if (count == 0) return Double.NaN;
+        if (count <= 5) {
+            // nearest rank on the sorted first observations
+            int rank = (int) Math.ceil(p * count) - 1;
+            return heights[Math.max(0, Math.min((int) count - 1, rank))];
+        }
+        return heights[2];
+    }
+
+    private double parabolic(int m, int sign) {
+        return heights[m] + sign / (positions[m + 1] - positions[m - 1])
+                * ((positions[m] - positions[m - 1] + sign) * (heights[m + 1] - heights[m])
+                / (positions[m + 1] - positions[m])
+                + (positions[m + 1] - positions[m] - sign) * (heights[m] - heights[m - 1])
+                / (positions[m] - positions[m - 1]));
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Scores every member of a population against a prediction problem.
+ * Each candidate is evaluated independently with the same arithmetic, so the
+ * fitness values are identical whichever implementation or thread count is
+ * used.
+ */
+public interface PopulationEvaluator {
+    /**
+     * Evaluates each member of the population and stores its MSE.
+     * @param population The candidates to evaluate
+     * @param problem The prediction problem to evaluate against
+     * @param fitness Output array, fitness[i] receives the MSE of population[i]
+     */
+    void evaluate(double[][] population, CarPricePrediction problem, double[] fitness);
+
+    /**
+     * Evaluates each member of a population stored as a flat genome matrix,
+     * member i occupying genomes[i * N_PARAMETERS, (i + 1) * N_PARAMETERS).
+     * @param genomes The flat genome matrix
+     * @param count The number of members
+     * @param problem The prediction problem to evaluate against
+     * @param fitness Output array, fitness[i] receives the MSE of member i
+     */
+    void evaluate(double[] genomes, int count, CarPricePrediction problem, double[] fitness);
+
+    /**
+     * Evaluates each member of the population.
+     * @param population The candidates to evaluate
+     * @param problem The prediction problem to evaluate against
+     * @return A new array holding the MSE of each candidate
+     */
+    default double[] evaluate(double[][] population, CarPricePrediction problem) {
+        double[] fitness = new double[population.length];
+        evaluate(population, problem, fitness);
+        return fitness;
+    }
+
+    /**
+     * @return An evaluator scoring candidates one by one on the calling thread
+     */
+    static PopulationEvaluator sequential() {
+        return new SequentialEvaluator();
+    }
+
+    /**
+     * @return An evaluator splitting the population across the common
+     * fork/join pool
+     */
+    static PopulationEvaluator forkJoin() {
+        return new ForkJoinEvaluator(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param threads The number of worker threads
+     * @return An evaluator splitting the population across a fixed pool of
+     * daemon threads
+     */
+    static PopulationEvaluator fixedThreadPool(int threads) {
+        return new ThreadPoolEvaluator(threads);
+    }
+
+    /**
+     * Selects an evaluator from the "ea.evaluator" system property. Valid
+     * values are "sequential" (the default), "forkjoin" and "threads", which
+     * uses "ea.threads" workers or one per available processor.
+     * @return The configured evaluator
+     */
+    static PopulationEvaluator fromProperties() {
+        String kind = System.getProperty("ea.evaluator", "sequential");
+        switch (kind) {
+            case "sequential":
+                return sequential();
+            case "forkjoin":
+                return forkJoin();
+            case "threads":
+                return fixedThreadPool(Integer.getInteger("ea.threads",
+                        Runtime.getRuntime().availableProcessors()));
+            default:
+                throw new IllegalArgumentException("Only permitted values for ea.evaluator are " +
+                        "sequential, forkjoin and threads.");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Derives independent, reproducible random number streams from one seed.
+ * A stream is named by the seed it belongs to and a stream id, such as a
+ * run, island, worker or generation number, so any stream can be recreated
+ * from those two numbers alone without replaying the streams before it.
+ * Derived seeds are passed through the SplitMix64 finaliser, so nearby
+ * seeds and ids give unrelated streams.
+ * Streams are drawn from Generator, which produces exactly the values a
+ * SplittableRandom would but can be repositioned in place, so a hot loop
+ * can move to a new stream without allocating.
+ */
+final class RandomStreams {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private RandomStreams() {
+    }
+
+    /**
+     * @param seed The parent seed
+     * @param streamId The id of the child stream
+     * @return The seed of the child stream
+     */
+    static long derive(long seed, long streamId) {
+        return mix64(seed + mix64((streamId + 1) * GOLDEN_GAMMA));
+    }
+
+    /**
+     * @param seed The parent seed
+     * @param streamId The id of the child stream
+     * @return A new generator positioned at the start of the child stream
+     */
+    static Generator stream(long seed, long streamId) {
+        return new Generator().reseed(seed, streamId);
+    }
+
+    /**
+     * SplitMix64 generator with the same seed and gamma arithmetic as
+     * SplittableRandom, so a Generator and a SplittableRandom started from
+     * the same seed, or split from matching parents, return the same
+     * values. Unlike SplittableRandom its position can be reset, and a split
+     * is written into an existing generator instead of a new one.
+     * Not thread-safe; give each thread its own generator.
+     */
+    static final class Generator implements RandomGenerator {
+        private long seed;
+        private long gamma;
+
+        /**
+         * Moves to the start of a derived stream
+         * @param seed The parent seed
+         * @param streamId The id of the child stream
+         * @return This generator
+         */
+        Generator reseed(long seed, long streamId) {
+            this.seed = derive(seed, streamId);
+            gamma = GOLDEN_GAMMA;
+            return this;
+        }
+
+        /**
+         * Positions another generator where SplittableRandom.split() would
+         * start the new generator, advancing this one as split() does
+         * @param child The generator to reposition
+         * @return The child
+         */
+        Generator splitInto(Generator child) {
+            child.seed = nextLong();
+            child.gamma = mixGamma(nextSeed());
+            return child;
+        }
+
+        @Override
+        public long nextLong() {
+            return mix64(nextSeed());
+        }
+
+        @Override
+        public int nextInt() {
+            return mix32(nextSeed());
+        }
+
+        private long nextSeed() {
+            return seed += gamma;
+        }
+    }
+
+    /**
+     * SplitMix64 finaliser for 32 bit results, as in SplittableRandom
+     */
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /**
+     * Gamma of a split stream: odd, and with enough bit transitions to mix
+     * well, as in SplittableRandom
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+
+    /**
+     * SplitMix64 finaliser (Stafford variant 13)
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
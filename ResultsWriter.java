@@ -0,0 +1,349 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams experiment results to disk on a background thread. Runs hand
+ * their per-run and per-generation rows to a bounded queue and carry on;
+ * when the queue is full they wait for the writer. Memory therefore stays
+ * fixed however many runs a sweep has.
+ * Results go to two files, "prefixRuns" and "prefixGenerations". They are
+ * CSV by default, or the compact columnar binary format described at
+ * BinarySink with -Dea.resultsFormat=binary.
+ * The writer flushes whenever it has drained the queue, so finished rows
+ * reach the files within moments. A shutdown hook drains and flushes the
+ * queue if the JVM exits without close(), for example when a run throws or
+ * the process is interrupted.
+ */
+public final class ResultsWriter implements AutoCloseable {
+    static final int QUEUE_CAPACITY = 4096;
+
+    /** File format of the results. */
+    public enum Format {
+        CSV, BINARY;
+
+        /**
+         * @return The format chosen by the ea.resultsFormat system property, CSV by default
+         */
+        public static Format fromProperties() {
+            return valueOf(System.getProperty("ea.resultsFormat", "csv").toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Best training MSE of one run after one of its generations, and the
+     * evaluations its tournaments saved by reading cached fitness.
+     */
+    public record GenerationResult(int run, long seed, int generation, double bestCost, long evaluationsSaved) {
+    }
+
+    /** Receives rows on the writer thread. */
+    private interface Sink extends AutoCloseable {
+        void run(ExperimentRunner.RunResult result) throws IOException;
+
+        void generation(GenerationResult result) throws IOException;
+
+        void flush() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private static final Object END = new Object(); // queued by close() after the last row
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Sink sink;
+    private final Thread writer;
+    private final Thread shutdownHook;
+    private volatile IOException failure;
+    private boolean closed;
+
+    private ResultsWriter(Sink sink, String name) {
+        this.sink = sink;
+        writer = new Thread(this::Drain, "results-" + name);
+        writer.setDaemon(true);
+        writer.start();
+        shutdownHook = new Thread(this::Finish, "results-" + name + "-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Opens the result files of an experiment in the working directory
+     * @param prefix The start of the file names, such as "Baseline"
+     * @param format The file format
+     * @return A writer for the experiment's results
+     */
+    public static ResultsWriter open(String prefix, Format format) throws IOException {
+        Path runs = Path.of(prefix + "Runs." + (format == Format.CSV ? "csv" : "bin"));
+        Path generations = Path.of(prefix + "Generations." + (format == Format.CSV ? "csv" : "bin"));
+        return new ResultsWriter(format == Format.CSV ? new CsvSink(runs, generations)
+                : new BinarySink(runs, generations), prefix);
+    }
+
+    /**
+     * Queues the summary of a finished run, waiting while the queue is full
+     * @param result The run
+     */
+    void add(ExperimentRunner.RunResult result) throws IOException, InterruptedException {
+        Put(result);
+    }
+
+    /**
+     * Queues a run's best training MSE after each of its generations
+     * @param run The index of the run
+     * @param seed The run's seed
+     * @param bestCosts The run's best training MSE after each generation
+     * @param evaluationsSaved The evaluations saved in each generation
+     */
+    void addGenerations(int run, long seed, double[] bestCosts, long[] evaluationsSaved)
+            throws IOException, InterruptedException {
+        for (int g = 0; g < bestCosts.length; g++) {
+            Put(new GenerationResult(run, seed, g + 1, bestCosts[g], evaluationsSaved[g]));
+        }
+    }
+
+    /**
+     * Writes every queued row, closes the files and stops the writer thread
+     * @throws IOException If any row could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // the JVM is already shutting down and the hook will finish the files
+        }
+        Finish();
+        if (failure != null) throw failure;
+    }
+
+    private void Put(Object row) throws IOException, InterruptedException {
+        do {
+            if (failure != null) throw failure;
+        } while (!queue.offer(row, 100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Queues the end marker once and waits for the writer to finish
+     */
+    private synchronized void Finish() {
+        if (closed) return;
+        closed = true;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                while (writer.isAlive() && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                    // the writer is still draining a full queue
+                }
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Body of the writer thread: writes rows until the end marker, flushing
+     * each time the queue runs dry. After a failed write it stops, leaving
+     * the failure for Put and close() to report
+     */
+    private void Drain() {
+        try (sink) {
+            while (true) {
+                Object row = queue.take();
+                do {
+                    if (row == END) return;
+                    if (row instanceof ExperimentRunner.RunResult run) {
+                        sink.run(run);
+                    } else {
+                        sink.generation((GenerationResult) row);
+                    }
+                } while ((row = queue.poll()) != null);
+                sink.flush();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new IOException("The results writer was interrupted.", e);
+        }
+    }
+
+    /** One CSV row per run and per generation. */
+    private static final class CsvSink implements Sink {
+        private final BufferedWriter runs;
+        private final BufferedWriter generations;
+
+        CsvSink(Path runs, Path generations) throws IOException {
+            this.runs = Files.newBufferedWriter(runs);
+            this.generations = Files.newBufferedWriter(generations);
+            this.runs.write("run,seed,best_cost,validation_error,time_ms,stop_reason,generations,evaluations");
+            this.runs.newLine();
+            this.generations.write("run,seed,generation,best_cost,evaluations_saved");
+            this.generations.newLine();
+        }
+
+        @Override
+        public void run(ExperimentRunner.RunResult result) throws IOException {
+            runs.write(result.run() + "," + result.seed() + "," + result.bestCost() + ","
+                    + result.validationError() + "," + result.timeMillis() + "," + result.stopReason() + ","
+                    + result.generations() + "," + result.evaluations());
+            runs.newLine();
+        }
+
+        @Override
+        public void generation(GenerationResult result) throws IOException {
+            generations.write(result.run() + "," + result.seed() + "," + result.generation() + ","
+                    + result.bestCost() + "," + result.evaluationsSaved());
+            generations.newLine();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            runs.flush();
+            generations.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (generations; runs) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Columnar binary files of little-endian values. Each file starts with
+     * int magic, int version and is followed by blocks of up to BLOCK rows,
+     * each an int row count followed by one column after another:
+     * <pre>
+     * runs:        int run, long seed, double best cost, double validation
+     *              error, long time ms, byte stop reason ordinal,
+     *              int generations, long evaluations
+     * generations: int run, long seed, int generation, double best cost,
+ *              long evaluations saved
+     * </pre>
+     * A block is written whenever one fills or the writer flushes, so column
+     * buffers never hold more than BLOCK rows.
+     */
+    private static final class BinarySink implements Sink {
+        static final int MAGIC = 0x45415253; // "EARS"
+        static final int VERSION = 2;
+        static final int BLOCK = 1024;
+        private final FileChannel runs;
+        private final FileChannel generations;
+        private final int[] runIndex = new int[BLOCK];
+        private final long[] runSeed = new long[BLOCK];
+        private final double[] runBestCost = new double[BLOCK];
+        private final double[] runValidationError = new double[BLOCK];
+        private final long[] runTime = new long[BLOCK];
+        private final byte[] runStopReason = new byte[BLOCK];
+        private final int[] runGenerations = new int[BLOCK];
+        private final long[] runEvaluations = new long[BLOCK];
+        private int runCount;
+        private final int[] generationRun = new int[BLOCK];
+        private final long[] generationSeed = new long[BLOCK];
+        private final int[] generationIndex = new int[BLOCK];
+        private final double[] generationBestCost = new double[BLOCK];
+        private final long[] generationEvaluationsSaved = new long[BLOCK];
+        private int generationCount;
+        private final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + BLOCK * 49)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        BinarySink(Path runs, Path generations) throws IOException {
+            this.runs = Open(runs);
+            this.generations = Open(generations);
+        }
+
+        private FileChannel Open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(VERSION);
+            Write(channel);
+            return channel;
+        }
+
+        @Override
+        public void run(ExperimentRunner.RunResult result) throws IOException {
+            runIndex[runCount] = result.run();
+            runSeed[runCount] = result.seed();
+            runBestCost[runCount] = result.bestCost();
+            runValidationError[runCount] = result.validationError();
+            runTime[runCount] = result.timeMillis();
+            runStopReason[runCount] = (byte) (result.stopReason() == null ? -1 : result.stopReason().ordinal());
+            runGenerations[runCount] = result.generations();
+            runEvaluations[runCount] = result.evaluations();
+            if (++runCount == BLOCK) WriteRuns();
+        }
+
+        @Override
+        public void generation(GenerationResult result) throws IOException {
+            generationRun[generationCount] = result.run();
+            generationSeed[generationCount] = result.seed();
+            generationIndex[generationCount] = result.generation();
+            generationBestCost[generationCount] = result.bestCost();
+            generationEvaluationsSaved[generationCount] = result.evaluationsSaved();
+            if (++generationCount == BLOCK) WriteGenerations();
+        }
+
+        private void WriteRuns() throws IOException {
+            if (runCount == 0) return;
+            int n = runCount;
+            buffer.clear();
+            buffer.putInt(n);
+            for (int i = 0; i < n; i++) buffer.putInt(runIndex[i]);
+            for (int i = 0; i < n; i++) buffer.putLong(runSeed[i]);
+            for (int i = 0; i < n; i++) buffer.putDouble(runBestCost[i]);
+            for (int i = 0; i < n; i++) buffer.putDouble(runValidationError[i]);
+            for (int i = 0; i < n; i++) buffer.putLong(runTime[i]);
+            buffer.put(runStopReason, 0, n);
+            for (int i = 0; i < n; i++) buffer.putInt(runGenerations[i]);
+            for (int i = 0; i < n; i++) buffer.putLong(runEvaluations[i]);
+            Write(runs);
+            runCount = 0;
+        }
+
+        private void WriteGenerations() throws IOException {
+            if (generationCount == 0) return;
+            int n = generationCount;
+            buffer.clear();
+            buffer.putInt(n);
+            for (int i = 0; i < n; i++) buffer.putInt(generationRun[i]);
+            for (int i = 0; i < n; i++) buffer.putLong(generationSeed[i]);
+            for (int i = 0; i < n; i++) buffer.putInt(generationIndex[i]);
+            for (int i = 0; i < n; i++) buffer.putDouble(generationBestCost[i]);
+            for (int i = 0; i < n; i++) buffer.putLong(generationEvaluationsSaved[i]);
+            Write(generations);
+            generationCount = 0;
+        }
+
+        private void Write(FileChannel channel) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            WriteRuns();
+            WriteGenerations();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (generations; runs) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Summary statistics of a stream of values computed in constant memory.
+ * Mean and variance use Welford's update, the percentiles are P-squared
+ * estimates. Not thread-safe; feed it from one thread.
+ */
+public final class RunningStatistics {
+    private static final double[] PERCENTILES = {0.05, 0.25, 0.5, 0.75, 0.95};
+
+    private final P2Quantile[] quantiles = new P2Quantile[PERCENTILES.length];
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public RunningStatistics() {
+        for (int i = 0; i < PERCENTILES.length; i++) quantiles[i] = new P2Quantile(PERCENTILES[i]);
+    }
+
+    /**
+     * Adds one value to the summary
+     * @param x The value
+     */
+    public void add(double x) {
+        count++;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+        min = Math.min(min, x);
+        max = Math.max(max, x);
+        for (P2Quantile quantile : quantiles) quantile.add(x);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * @return The population variance, the mean squared difference from the mean
+     */
+    public double variance() {
+        return count == 0 ? Double.NaN : m2 / count;
+    }
+
+    /**
+     * @return The sample variance, dividing by count - 1
+     */
+    public double sampleVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    public double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    public double min() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double max() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @param p One of 0.05, 0.25, 0.5, 0.75 or 0.95
+     * @return The estimated percentile
+     */
+    public double percentile(double p) {
+        for (P2Quantile quantile : quantiles) {
+            if (quantile.quantile() == p) return quantile.estimate();
+        }
+        throw new IllegalArgumentException("Only the 0.05, 0.25, 0.5, 0.75 and 0.95 percentiles are tracked.");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%g sd=%g min=%g p5=%g p25=%g median=%g p75=%g p95=%g max=%g",
+                count, mean(), standardDeviation(), min(), percentile(0.05), percentile(0.25),
+                percentile(0.5), percentile(0.75), percentile(0.95), max());
+    }
+}
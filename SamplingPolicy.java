@@ -0,0 +1,39 @@
+/**
+ * How local search scores candidate moves. With a batch of 0 rows every
+ * move is scored on the whole training set. Otherwise moves are first
+ * estimated on a mini-batch of rows that rotates every generation, and a
+ * move that looks like an improvement is either confirmed on the whole
+ * training set before it is kept or kept on the estimate alone.
+ * Population fitness, and so the best cost of each generation, is always
+ * computed on the whole training set.
+ * @param batchRows The number of rows in the mini-batch, 0 for full data
+ * @param confirmOnFullData Whether apparent improvements are re-scored on
+ *                          every row before they are kept
+ */
+public record SamplingPolicy(int batchRows, boolean confirmOnFullData) {
+    /** Scores every move on the whole training set. */
+    public static final SamplingPolicy FULL_DATA = new SamplingPolicy(0, true);
+
+    public SamplingPolicy {
+        if (batchRows < 0) {
+            throw new IllegalArgumentException("The mini-batch size cannot be negative.");
+        }
+    }
+
+    /**
+     * @return The policy chosen by the ea.miniBatch (rows, default 0) and
+     * ea.confirm (default true) system properties
+     */
+    public static SamplingPolicy fromProperties() {
+        return new SamplingPolicy(Integer.getInteger("ea.miniBatch", 0),
+                Boolean.parseBoolean(System.getProperty("ea.confirm", "true")));
+    }
+
+    /**
+     * @param rows The number of rows in the training set
+     * @return Whether moves on a training set of that size are estimated on a mini-batch
+     */
+    boolean samples(int rows) {
+        return batchRows > 0 && batchRows < rows;
+    }
+}
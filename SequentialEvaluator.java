@@ -0,0 +1,14 @@
+/**
+ * Evaluates a population on the calling thread with the batched kernel.
+ */
+final class SequentialEvaluator implements PopulationEvaluator {
+    @Override
+    public void evaluate(double[][] population, CarPricePrediction problem, double[] fitness) {
+        problem.evaluateBatch(population, 0, population.length, fitness, EvaluationContext.current());
+    }
+
+    @Override
+    public void evaluate(double[] genomes, int count, CarPricePrediction problem, double[] fitness) {
+        problem.evaluateBatch(genomes, 0, count, fitness, EvaluationContext.current());
+    }
+}
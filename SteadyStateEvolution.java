@@ -0,0 +1,210 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Steady-state, asynchronous version of the evolutionary algorithms.
+ * Instead of building a whole new generation behind a barrier, each worker
+ * repeatedly picks two parents by tournament, creates and improves one pair
+ * of offspring with its own engine's operators, and inserts each child in
+ * place of the current worst member if it is better. The population is an
+ * array of immutable individuals updated with compare-and-set, so workers
+ * never lock and a slow local search only delays its own worker.
+ */
+public class SteadyStateEvolution {
+    /** An immutable member of the shared population. */
+    record Individual(double[] genome, double cost) {
+    }
+
+    private final int numberOfParents;
+    private final int workers;
+    private final LongFunction<EvolutionEngine> engineFactory;
+    private final long baseSeed;
+    private AtomicReferenceArray<Individual> population;
+    private final AtomicReference<Individual> best = new AtomicReference<>();
+    private final AtomicLong offspringClaimed = new AtomicLong();
+    private final AtomicLong offspringCreated = new AtomicLong();
+    private final AtomicLong offspringInserted = new AtomicLong();
+    /** (elapsed seconds, best cost) recorded each time the best cost improves. */
+    private final ConcurrentLinkedQueue<double[]> bestCostTrace = new ConcurrentLinkedQueue<>();
+    private long startTime;
+    private double elapsedSeconds;
+
+    /**
+     * @param numberOfParents The size of the shared population
+     * @param workers The number of worker threads
+     * @param baseSeed Worker i uses an engine seeded with stream i derived
+     *                 from baseSeed; the initial population uses stream -1
+     * @param engineFactory Creates a worker's engine from its seed; the
+     *                      engine supplies the operators and local search
+     */
+    public SteadyStateEvolution(int numberOfParents, int workers, long baseSeed,
+                                LongFunction<EvolutionEngine> engineFactory) {
+        if (numberOfParents < 4 || workers < 1) {
+            throw new IllegalArgumentException("SteadyStateEvolution needs at least four parents and one worker.");
+        }
+        this.numberOfParents = numberOfParents;
+        this.workers = workers;
+        this.baseSeed = baseSeed;
+        this.engineFactory = engineFactory;
+    }
+
+    /**
+     * Evolves a random population until the workers between them have
+     * created the given number of offspring
+     * @param trainingProblem The prediction class
+     * @param offspringBudget The total number of offspring to create
+     */
+    public void Run(CarPricePrediction trainingProblem, long offspringBudget) {
+        startTime = System.nanoTime();
+        EvolutionEngine seeding = engineFactory.apply(RandomStreams.derive(baseSeed, -1));
+        double[][] bounds = CarPricePrediction.bounds();
+        double[][] initial = new double[numberOfParents][];
+        for (int i = 0; i < numberOfParents; i++) initial[i] = EvolutionEngine.RandomParameters(bounds, seeding.random);
+        double[] costs = new double[numberOfParents];
+        trainingProblem.evaluateBatch(initial, 0, numberOfParents, costs, EvaluationContext.current());
+        population = new AtomicReferenceArray<>(numberOfParents);
+        for (int i = 0; i < numberOfParents; i++) {
+            Individual individual = new Individual(initial[i], costs[i]);
+            population.set(i, individual);
+            OfferBest(individual);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                EvolutionEngine engine = engineFactory.apply(RandomStreams.derive(baseSeed, w));
+                engine.Attach(trainingProblem);
+                running.add(pool.submit(() -> Work(engine, trainingProblem, offspringBudget)));
+            }
+            for (Future<?> worker : running) worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Steady-state run was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A steady-state worker failed.", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+    }
+
+    /**
+     * One worker's loop: select, breed, improve, evaluate and insert until
+     * the shared offspring budget is used up
+     */
+    private void Work(EvolutionEngine engine, CarPricePrediction trainingProblem, long offspringBudget) {
+        EvaluationContext context = EvaluationContext.current();
+        int tournamentSelection = Math.max(2, numberOfParents / 4 / 2 * 2);
+        int length = engine.genomeLength;
+        while (offspringClaimed.getAndAdd(2) < offspringBudget) {
+            double[] first = Tournament(engine, tournamentSelection).genome();
+            double[] second = Tournament(engine, tournamentSelection).genome();
+            // children escape into the shared population, so each needs its own array
+            double[][] children = {new double[length], new double[length]};
+            engine.OnePointCrossover(first, 0, second, 0, children[0], 0, children[1], 0);
+            for (double[] child : children) {
+                if (engine.random.nextFloat() < engine.offspringMutationChance) {
+                    engine.SwapMutation(child, 0, length);
+                }
+                engine.ImproveOffspring(child, 0);
+                Individual offspring = new Individual(child, trainingProblem.evaluate(child, context));
+                offspringCreated.incrementAndGet();
+                if (ReplaceWorst(offspring)) offspringInserted.incrementAndGet();
+                OfferBest(offspring);
+            }
+        }
+    }
+
+    private Individual Tournament(EvolutionEngine engine, int tournamentSelection) {
+        Individual winner = null;
+        for (int i = 0; i < tournamentSelection; i++) {
+            Individual contender = population.get(engine.random.nextInt(numberOfParents));
+            if (winner == null || contender.cost() < winner.cost()) winner = contender;
+        }
+        return winner;
+    }
+
+    /**
+     * Puts the offspring in place of the worst member if it is better,
+     * retrying if another worker changed that slot in the meantime
+     * @return Whether the offspring joined the population
+     */
+    private boolean ReplaceWorst(Individual offspring) {
+        while (true) {
+            int worst = 0;
+            Individual worstIndividual = population.get(0);
+            for (int i = 1; i < numberOfParents; i++) {
+                Individual individual = population.get(i);
+                if (individual.cost() > worstIndividual.cost()) {
+                    worst = i;
+                    worstIndividual = individual;
+                }
+            }
+            if (offspring.cost() >= worstIndividual.cost()) return false;
+            if (population.compareAndSet(worst, worstIndividual, offspring)) return true;
+        }
+    }
+
+    private void OfferBest(Individual candidate) {
+        Individual current;
+        do {
+            current = best.get();
+            if (current != null && current.cost() <= candidate.cost()) return;
+        } while (!best.compareAndSet(current, candidate));
+        bestCostTrace.add(new double[]{(System.nanoTime() - startTime) / 1e9, candidate.cost()});
+    }
+
+    /**
+     * @return The lowest training MSE found
+     */
+    public double bestCost() {
+        return best.get().cost();
+    }
+
+    /**
+     * @return The parameters with the lowest training MSE found
+     */
+    public double[] bestPop() {
+        return best.get().genome();
+    }
+
+    /**
+     * @return The number of offspring created in the last run
+     */
+    public long offspringCreated() {
+        return offspringCreated.get();
+    }
+
+    /**
+     * @return The number of offspring that replaced a worse member
+     */
+    public long offspringInserted() {
+        return offspringInserted.get();
+    }
+
+    /**
+     * @return The offspring created and evaluated per second in the last run
+     */
+    public double offspringPerSecond() {
+        return offspringCreated.get() / elapsedSeconds;
+    }
+
+    /**
+     * @return Pairs of (elapsed seconds, best cost), one per improvement of
+     * the best cost, sorted by time
+     */
+    public List<double[]> bestCostTrace() {
+        List<double[]> trace = new ArrayList<>(bestCostTrace);
+        trace.sort((a, b) -> Double.compare(a[0], b[0]));
+        return trace;
+    }
+}
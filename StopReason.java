@@ -0,0 +1,15 @@
+/**
+ * The criterion that ended an evolutionary algorithm run.
+ */
+public enum StopReason {
+    /** The configured number of generations was reached. */
+    GENERATIONS,
+    /** The budget of fitness evaluations was used up. */
+    EVALUATIONS,
+    /** The run's time limit passed. */
+    DEADLINE,
+    /** The best cost stopped improving for the stagnation window. */
+    STAGNATION,
+    /** The population's diversity fell below the threshold. */
+    DIVERSITY
+}
@@ -0,0 +1,192 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bounded archive of evaluated genomes and their training MSE, used as a
+ * k-nearest-neighbour surrogate of the cost function. Genomes are stored
+ * in one flat ring buffer, so the archive never grows past its capacity
+ * and the oldest genomes are overwritten first. A prediction is the
+ * inverse-distance weighted mean of the costs of the k genomes nearest to
+ * the candidate in Euclidean distance; it costs one pass over the archive.
+ * Not thread-safe; the engine adds and predicts from its own thread.
+ */
+final class SurrogateArchive {
+    private final int genomeLength;
+    private final int capacity;
+    private final int neighbours;
+    private final double[] genomes; // entry e at genomes[e * genomeLength]
+    private final double[] costs;
+    private int size;
+    private int next; // ring position the next genome is written to
+    private final double[] nearestDistances;
+    private final double[] nearestCosts;
+
+    /**
+     * @param genomeLength The number of parameters of a genome
+     * @param capacity The most genomes kept
+     * @param neighbours The number of nearest genomes a prediction averages
+     */
+    SurrogateArchive(int genomeLength, int capacity, int neighbours) {
+        this.genomeLength = genomeLength;
+        this.capacity = capacity;
+        this.neighbours = neighbours;
+        genomes = new double[capacity * genomeLength];
+        costs = new double[capacity];
+        nearestDistances = new double[neighbours];
+        nearestCosts = new double[neighbours];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Empties the archive
+     */
+    void clear() {
+        size = 0;
+        next = 0;
+    }
+
+    /**
+     * Adds an evaluated genome, replacing the oldest one when full
+     * @param source The genome matrix holding the genome
+     * @param offset The index of the genome's first parameter
+     * @param cost The genome's training MSE
+     */
+    void add(double[] source, int offset, double cost) {
+        System.arraycopy(source, offset, genomes, next * genomeLength, genomeLength);
+        costs[next] = cost;
+        next = (next + 1) % capacity;
+        if (size < capacity) size++;
+    }
+
+    /**
+     * Predicts the cost of a genome from its nearest archived neighbours
+     * @param source The genome matrix holding the genome
+     * @param offset The index of the genome's first parameter
+     * @return The predicted training MSE, or NaN while the archive is empty
+     */
+    double predict(double[] source, int offset) {
+        if (size == 0) return Double.NaN;
+        int k = Math.min(neighbours, size);
+        Arrays.fill(nearestDistances, 0, k, Double.POSITIVE_INFINITY);
+        for (int e = 0; e < size; e++) {
+            double distance = 0;
+            int base = e * genomeLength;
+            for (int j = 0; j < genomeLength; j++) {
+                double d = genomes[base + j] - source[offset + j];
+                distance += d * d;
+            }
+            if (distance >= nearestDistances[k - 1]) continue;
+            // insertion into the sorted list of the k nearest so far
+            int slot = k - 1;
+            while (slot > 0 && nearestDistances[slot - 1] > distance) {
+                nearestDistances[slot] = nearestDistances[slot - 1];
+                nearestCosts[slot] = nearestCosts[slot - 1];
+                slot--;
+            }
+            nearestDistances[slot] = distance;
+            nearestCosts[slot] = costs[e];
+        }
+        if (nearestDistances[0] == 0) return nearestCosts[0];
+        double weighted = 0;
+        double weights = 0;
+        for (int n = 0; n < k; n++) {
+            double weight = 1 / Math.sqrt(nearestDistances[n]);
+            weighted += weight * nearestCosts[n];
+            weights += weight;
+        }
+        return weighted / weights;
+    }
+
+    /**
+     * @return The size of the archive's state in a checkpoint
+     */
+    int stateBytes() {
+        return 2 * Integer.BYTES + size * (genomeLength + 1) * Double.BYTES;
+    }
+
+    /**
+     * Saves the archived genomes and costs into a checkpoint
+     * @param out The checkpoint
+     */
+    void write(ByteBuffer out) {
+        out.putInt(size).putInt(next);
+        for (int i = 0; i < size * genomeLength; i++) out.putDouble(genomes[i]);
+        for (int e = 0; e < size; e++) out.putDouble(costs[e]);
+    }
+
+    /**
+     * Restores the state saved by write
+     * @param in The checkpoint
+     */
+    void read(ByteBuffer in) {
+        size = in.getInt();
+        next = in.getInt();
+        for (int i = 0; i < size * genomeLength; i++) genomes[i] = in.getDouble();
+        for (int e = 0; e < size; e++) costs[e] = in.getDouble();
+    }
+
+    /**
+     * Spearman's rank correlation of two samples, with tied values given
+     * the mean of their ranks
+     * @param a The first sample
+     * @param b The second sample, paired with a
+     * @param n The number of pairs
+     * @return The correlation, or NaN when either sample is constant
+     */
+    static double RankCorrelation(double[] a, double[] b, int n) {
+        double[] ra = Ranks(a, n);
+        double[] rb = Ranks(b, n);
+        double mean = (n + 1) / 2.0;
+        double covariance = 0, varianceA = 0, varianceB = 0;
+        for (int i = 0; i < n; i++) {
+            covariance += (ra[i] - mean) * (rb[i] - mean);
+            varianceA += (ra[i] - mean) * (ra[i] - mean);
+            varianceB += (rb[i] - mean) * (rb[i] - mean);
+        }
+        return covariance / Math.sqrt(varianceA * varianceB);
+    }
+
+    private static double[] Ranks(double[] values, int n) {
+        int[] order = new int[n];
+        SortIndices(order, new int[n], values, n);
+        double[] ranks = new double[n];
+        for (int start = 0; start < n; ) {
+            int end = start;
+            while (end + 1 < n && values[order[end + 1]] == values[order[start]]) end++;
+            double rank = (start + end) / 2.0 + 1;
+            for (int i = start; i <= end; i++) ranks[order[i]] = rank;
+            start = end + 1;
+        }
+        return ranks;
+    }
+
+    /**
+     * Sorts the indices 0 to n - 1 by ascending key with a bottom-up merge
+     * sort, keeping indices with equal keys in ascending order
+     * @param order Receives the sorted indices, at least n long
+     * @param scratch Working space, at least n long
+     * @param keys The key of each index
+     * @param n The number of indices
+     */
+    static void SortIndices(int[] order, int[] scratch, double[] keys, int n) {
+        for (int i = 0; i < n; i++) order[i] = i;
+        for (int width = 1; width < n; width *= 2) {
+            for (int low = 0; low < n - width; low += 2 * width) {
+                int middle = low + width;
+                int high = Math.min(low + 2 * width, n);
+                System.arraycopy(order, low, scratch, low, high - low);
+                int left = low, right = middle, out = low;
+                while (left < middle && right < high) {
+                    // the right run only goes first when strictly smaller, which keeps the sort stable
+                    order[out++] = Double.compare(keys[scratch[right]], keys[scratch[left]]) < 0
+                            ? scratch[right++] : scratch[left++];
+                }
+                while (left < middle) order[out++] = scratch[left++];
+                while (right < high) order[out++] = scratch[right++];
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Whether and how a k-nearest-neighbour surrogate decides which offspring
+ * get local search. Each generation the surrogate predicts every
+ * offspring's cost from the most similar genomes already evaluated, and
+ * only the searchFraction of offspring it ranks best are searched; the
+ * rest join the population as bred. Every member is still scored on the
+ * training set by EvaluatePopulation, so selection never sees a predicted
+ * cost.
+ * @param archiveSize The most evaluated genomes kept, 0 to switch the
+ *                    surrogate off; the oldest are replaced first
+ * @param neighbours The number of nearest genomes a prediction averages
+ * @param searchFraction The share of offspring that get local search
+ */
+public record SurrogatePolicy(int archiveSize, int neighbours, double searchFraction) {
+    /** Searches every offspring without consulting a surrogate. */
+    public static final SurrogatePolicy OFF = new SurrogatePolicy(0, 1, 1);
+
+    public SurrogatePolicy {
+        if (archiveSize < 0 || neighbours < 1 || searchFraction <= 0 || searchFraction > 1) {
+            throw new IllegalArgumentException("The surrogate needs a non-negative archive, at least one "
+                    + "neighbour and a search fraction in (0, 1].");
+        }
+    }
+
+    /**
+     * @return The policy chosen by the ea.surrogate (default false),
+     * ea.surrogateArchive (genomes, default 1024), ea.surrogateNeighbours
+     * (default 8) and ea.surrogateFraction (default 0.5) system properties
+     */
+    public static SurrogatePolicy fromProperties() {
+        if (!Boolean.getBoolean("ea.surrogate")) return OFF;
+        return new SurrogatePolicy(Integer.getInteger("ea.surrogateArchive", 1024),
+                Integer.getInteger("ea.surrogateNeighbours", 8),
+                Double.parseDouble(System.getProperty("ea.surrogateFraction", "0.5")));
+    }
+
+    /**
+     * @return Whether offspring are screened by a surrogate
+     */
+    boolean enabled() {
+        return archiveSize > 0 && searchFraction < 1;
+    }
+}
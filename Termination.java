@@ -0,0 +1,42 @@
+/**
+ * Stopping criteria of a run beyond its number of generations. Every
+ * criterion is checked between generations, so a run can overshoot a
+ * budget or time limit by at most one generation. The memetic algorithm
+ * also checks the evaluation budget and time limit before each offspring's
+ * local search and leaves the rest of the generation unsearched once
+ * either is used up, so it overshoots by at most one search and the
+ * scoring of the population. A value of 0 turns a criterion off.
+ * @param maxEvaluations The most fitness evaluations a run may use. Each
+ *                       population member scored counts once, as does each
+ *                       scoring pass of local search, whether incremental,
+ *                       bounded or on a mini-batch
+ * @param timeLimitMillis The most wall-clock time a run may take, counted
+ *                        from its initialisation or resumption
+ * @param stagnationGenerations The number of generations in a row without
+ *                              a new best cost after which a run stops
+ * @param minDiversity The population diversity, the mean per-parameter
+ *                     standard deviation, below which a run stops
+ */
+public record Termination(long maxEvaluations, long timeLimitMillis, int stagnationGenerations,
+                          double minDiversity) {
+    /** Runs for the configured number of generations only. */
+    public static final Termination GENERATIONS_ONLY = new Termination(0, 0, 0, 0);
+
+    public Termination {
+        if (maxEvaluations < 0 || timeLimitMillis < 0 || stagnationGenerations < 0 || minDiversity < 0) {
+            throw new IllegalArgumentException("Termination criteria cannot be negative.");
+        }
+    }
+
+    /**
+     * @return The criteria chosen by the ea.maxEvaluations,
+     * ea.timeLimitMillis, ea.stagnationGenerations and ea.minDiversity
+     * system properties, each off by default
+     */
+    public static Termination fromProperties() {
+        return new Termination(Long.getLong("ea.maxEvaluations", 0),
+                Long.getLong("ea.timeLimitMillis", 0),
+                Integer.getInteger("ea.stagnationGenerations", 0),
+                Double.parseDouble(System.getProperty("ea.minDiversity", "0")));
+    }
+}
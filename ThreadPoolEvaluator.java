@@ -0,0 +1,60 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates a population by dividing it into one contiguous slice per worker
+ * of a fixed pool of daemon threads.
+ */
+final class ThreadPoolEvaluator implements PopulationEvaluator {
+    private final ExecutorService pool;
+    private final int threads;
+
+    ThreadPoolEvaluator(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("ThreadPoolEvaluator needs at least one thread.");
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "population-evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void evaluate(double[][] population, CarPricePrediction problem, double[] fitness) {
+        int slices = Math.min(threads, population.length);
+        Future<?>[] futures = new Future<?>[slices];
+        for (int s = 0; s < slices; s++) {
+            int from = (int) ((long) population.length * s / slices);
+            int to = (int) ((long) population.length * (s + 1) / slices);
+            futures[s] = pool.submit(() ->
+                    problem.evaluateBatch(population, from, to, fitness, EvaluationContext.current()));
+        }
+        await(futures);
+    }
+
+    @Override
+    public void evaluate(double[] genomes, int count, CarPricePrediction problem, double[] fitness) {
+        int slices = Math.min(threads, count);
+        Future<?>[] futures = new Future<?>[slices];
+        for (int s = 0; s < slices; s++) {
+            int from = (int) ((long) count * s / slices);
+            int to = (int) ((long) count * (s + 1) / slices);
+            futures[s] = pool.submit(() ->
+                    problem.evaluateBatch(genomes, from, to, fitness, EvaluationContext.current()));
+        }
+        await(futures);
+    }
+
+    private static void await(Future<?>[] futures) {
+        try {
+            for (Future<?> future : futures) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Population evaluation was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Population evaluation failed.", e.getCause());
+        }
+    }
+}
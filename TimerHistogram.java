@@ -0,0 +1,67 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of durations in nanoseconds with power-of-two
+ * buckets. Recording is a few LongAdder increments, so many threads can
+ * record into one histogram without contending on a shared counter.
+ * Percentiles are the upper bound of the bucket they fall in, so they are
+ * accurate to within a factor of two.
+ */
+final class TimerHistogram {
+    private final String name;
+    private final LongAdder[] buckets = new LongAdder[64];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * @param name What the histogram times, used when printing it
+     */
+    TimerHistogram(String name) {
+        this.name = name;
+        for (int b = 0; b < buckets.length; b++) buckets[b] = new LongAdder();
+    }
+
+    /**
+     * Adds one duration
+     * @param nanos The duration in nanoseconds
+     */
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets[63 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @param p The percentile, between 0 and 1
+     * @return An upper bound on that percentile of the recorded durations
+     * in nanoseconds, or 0 when nothing was recorded
+     */
+    long percentile(double p) {
+        long total = count.sum();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int b = 0; b < buckets.length; b++) {
+            seen += buckets[b].sum();
+            if (seen >= Math.max(rank, 1)) return b == 63 ? Long.MAX_VALUE : (1L << (b + 1)) - 1;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        long n = count();
+        return String.format("%-18s count=%d total=%.1fms mean=%.1fus p50<=%.1fus p99<=%.1fus", name, n,
+                totalNanos() / 1e6, n == 0 ? 0 : totalNanos() / 1e3 / n, percentile(0.5) / 1e3,
+                percentile(0.99) / 1e3);
+    }
+}
@@ -0,0 +1,97 @@
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Checks that a generation of each engine allocates nothing once it is
+ * warmed up, so a change that brings garbage back into the hot loop fails
+ * loudly instead of slowly. Bytes are counted with
+ * com.sun.management.ThreadMXBean over every live thread, which includes
+ * the fork/join workers of parallel local search. Each generation is
+ * measured on its own and the median is checked, since the JVM itself
+ * allocates a few hundred bytes in the odd generation (compilation, lazy
+ * linkage) while garbage in the hot loop shows up in every generation.
+ * Built with the benchmark suite and run as
+ * <pre>
+ * java -cp out:out-bench AllocationCheck
+ * </pre>
+ * The baseline engine must allocate 0 bytes per generation. The memetic
+ * engine must too when run with -Dea.parallelLocalSearch=false; with
+ * parallel local search its fork/join tasks may allocate up to
+ * bench.allocationBound bytes per generation (default 4096). Settings:
+ * bench.warmupGenerations and bench.generations (default 20 and 20) and
+ * bench.datasetSize (rows of the synthetic dataset, default 1000). Metrics
+ * must be off, as recording them allocates.
+ */
+public class AllocationCheck {
+    public static void main(String[] args) throws Exception {
+        if (Metrics.ENABLED) {
+            throw new IllegalStateException("Run the allocation check without -Dea.metrics=true.");
+        }
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM cannot count allocated bytes per thread.");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        int warmup = Integer.getInteger("bench.warmupGenerations", 20);
+        int generations = Integer.getInteger("bench.generations", 20);
+        Path directory = Path.of(System.getProperty("bench.dataDir", "bench-data"));
+        Files.createDirectories(directory);
+        CarPricePrediction problem = new CarPricePrediction(
+                FitnessBenchmarks.SyntheticDataset(directory, Integer.getInteger("bench.datasetSize", 1000)));
+        EngineConfig config = new EngineConfig(50, warmup + generations, 0.7f, 1, PopulationEvaluator.sequential(),
+                SamplingPolicy.FULL_DATA, Termination.GENERATIONS_ONLY, CheckpointPolicy.NONE, SurrogatePolicy.OFF);
+        long memeticBound = CalcsMain.PARALLEL_LOCAL_SEARCH ? Long.getLong("bench.allocationBound", 4096) : 0;
+        Check("baseline", new BaselineMain(config), problem, warmup, generations, 0, threads);
+        Check("memetic", new CalcsMain(config), problem, warmup, generations, memeticBound, threads);
+    }
+
+    /**
+     * Evolves an engine through its warmup generations, then measures the
+     * bytes allocated by each of the rest and checks their median
+     * @param name The engine's name in the report
+     * @param engine The engine to check
+     * @param problem The prediction problem to train on
+     * @param warmup Generations run before measuring
+     * @param generations Generations measured
+     * @param bound The most bytes the median generation may allocate
+     * @param threads The bean counting allocated bytes
+     */
+    static void Check(String name, EvolutionEngine engine, CarPricePrediction problem, int warmup, int generations,
+                      long bound, com.sun.management.ThreadMXBean threads) {
+        engine.Initialise(problem);
+        for (int i = 0; i < warmup; i++) engine.EvolvePopulation();
+        // taken after warmup so the fork/join workers already exist
+        long[] threadIds = threads.getAllThreadIds();
+        long[] allocated = new long[generations];
+        for (int i = 0; i < generations; i++) {
+            long before = AllocatedBytes(threads, threadIds);
+            engine.EvolvePopulation();
+            allocated[i] = AllocatedBytes(threads, threadIds) - before;
+        }
+        Arrays.sort(allocated);
+        long median = allocated[generations / 2];
+        System.out.println(name + ": median " + median + " bytes per generation, most " + allocated[generations - 1]
+                + " (bound " + bound + ")");
+        if (median > bound) {
+            throw new IllegalStateException(name + " allocates " + median
+                    + " bytes per generation, more than its bound of " + bound + ".");
+        }
+    }
+
+    /**
+     * Sums thread by thread, as the bulk query allocates its result array
+     * @param threads The bean counting allocated bytes
+     * @param threadIds The threads to count
+     * @return The bytes allocated so far by those threads still alive
+     */
+    private static long AllocatedBytes(com.sun.management.ThreadMXBean threads, long[] threadIds) {
+        long total = 0;
+        for (long id : threadIds) {
+            long bytes = threads.getThreadAllocatedBytes(id);
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A small in-process stand-in for JMH, since the project has no build tool
+ * to pull JMH in. Each benchmark runs for a number of timed warmup
+ * iterations that are discarded, then for timed measurement iterations.
+ * Operations are timed in batches sized during warmup so the cost of
+ * System.nanoTime() does not swamp cheap operations. Every result is
+ * consumed so the JIT cannot remove the work. Scores are average time per
+ * operation with a 99.9% confidence interval. They are printed as they
+ * finish and written in JMH's JSON result layout plus a CSV, so existing
+ * JMH tooling and spreadsheets can compare runs release to release.
+ * Benchmarks that also measure something other than time, such as the
+ * best cost a run reaches, attach it to their result as a secondary metric.
+ * Unlike JMH, benchmarks share one JVM, so run a single suite or filter
+ * when one benchmark's profile pollution matters.
+ */
+final class BenchmarkHarness {
+    /** One operation of a benchmark, returning a value that is consumed. */
+    @FunctionalInterface
+    interface Operation {
+        double run() throws Throwable;
+    }
+
+    /** Outcome of one benchmark with one set of parameters. */
+    record Result(String benchmark, Map<String, String> params, double score, double scoreError,
+                  double[] rawData, Map<String, Secondary> secondaryMetrics) {
+    }
+
+    /** A measurement other than time attached to a result. */
+    record Secondary(double score, String unit) {
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final String filter;
+    private final List<Result> results = new ArrayList<>();
+    private double sink;
+
+    /**
+     * @param warmupIterations Timed iterations run and discarded first
+     * @param measurementIterations Timed iterations that are scored
+     * @param iterationMillis The length of each iteration
+     * @param filter Only benchmarks whose name contains this run, or null for all
+     */
+    BenchmarkHarness(int warmupIterations, int measurementIterations, long iterationMillis, String filter) {
+        if (warmupIterations < 0 || measurementIterations < 2 || iterationMillis < 1) {
+            throw new IllegalArgumentException("Need at least two measurement iterations of at least 1 ms.");
+        }
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.filter = filter;
+    }
+
+    /**
+     * @param name The benchmark's name
+     * @return Whether the filter selects the benchmark
+     */
+    boolean selected(String name) {
+        return filter == null || name.contains(filter);
+    }
+
+    /**
+     * Measures one benchmark and records its result
+     * @param name The benchmark's name
+     * @param params The parameter values it runs with, in display order
+     * @param operation The operation to time
+     * @return The result, or null when the filter skipped the benchmark
+     */
+    Result run(String name, Map<String, String> params, Operation operation) throws Throwable {
+        if (!selected(name)) return null;
+        int batch = 1;
+        for (int i = 0; i < warmupIterations; i++) {
+            batch = calibrate(operation, batch);
+            iteration(operation, batch);
+        }
+        double[] raw = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            raw[i] = iteration(operation, batch);
+        }
+        double mean = Arrays.stream(raw).average().orElse(0);
+        double variance = 0;
+        for (double r : raw) variance += (r - mean) * (r - mean);
+        variance /= raw.length - 1;
+        double error = studentT999(raw.length - 1) * Math.sqrt(variance / raw.length);
+        Result result = new Result(name, new LinkedHashMap<>(params), mean, error, raw, new LinkedHashMap<>());
+        results.add(result);
+        System.out.printf(Locale.ROOT, "%-28s %-36s %14.3f +- %10.3f ns/op%n", name, params, mean, error);
+        return result;
+    }
+
+    /**
+     * Attaches a secondary metric to a result and prints it
+     * @param result The result from run, ignored when null
+     * @param metric The metric's name
+     * @param score Its value
+     * @param unit Its unit
+     */
+    void secondary(Result result, String metric, double score, String unit) {
+        if (result == null) return;
+        result.secondaryMetrics().put(metric, new Secondary(score, unit));
+        System.out.printf(Locale.ROOT, "%-28s %-36s %14.6g %s%n", "  " + metric, "", score, unit);
+    }
+
+    /**
+     * Doubles the batch until a batch takes at least a hundredth of an iteration
+     */
+    private int calibrate(Operation operation, int batch) throws Throwable {
+        while (batch < (1 << 30)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < batch; i++) sink += operation.run();
+            if (System.nanoTime() - start >= iterationNanos / 100) break;
+            batch *= 2;
+        }
+        return batch;
+    }
+
+    /**
+     * Runs whole batches until the iteration time is used
+     * @return The average nanoseconds per operation
+     */
+    private double iteration(Operation operation, int batch) throws Throwable {
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < batch; i++) sink += operation.run();
+            operations += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return (double) elapsed / operations;
+    }
+
+    /** Two-sided 99.9% quantile of Student's t distribution, as JMH reports. */
+    private static double studentT999(int degreesOfFreedom) {
+        double[] table = {636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587};
+        if (degreesOfFreedom <= table.length) return table[degreesOfFreedom - 1];
+        if (degreesOfFreedom <= 20) return 3.850;
+        if (degreesOfFreedom <= 30) return 3.646;
+        return 3.291;
+    }
+
+    /**
+     * Writes every result in JMH's JSON result format
+     * @param file The file to write
+     */
+    void writeJson(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("[");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                out.write(i == 0 ? "\n" : ",\n");
+                out.write("    {\n");
+                out.write("        \"benchmark\" : \"" + r.benchmark() + "\",\n");
+                out.write("        \"mode\" : \"avgt\",\n");
+                out.write("        \"threads\" : 1,\n");
+                out.write("        \"forks\" : 0,\n");
+                out.write("        \"jvm\" : \"" + escape(System.getProperty("java.home")) + "\",\n");
+                out.write("        \"jdkVersion\" : \"" + System.getProperty("java.version") + "\",\n");
+                out.write("        \"warmupIterations\" : " + warmupIterations + ",\n");
+                out.write("        \"measurementIterations\" : " + measurementIterations + ",\n");
+                out.write("        \"params\" : {");
+                int p = 0;
+                for (Map.Entry<String, String> param : r.params().entrySet()) {
+                    out.write((p++ == 0 ? "\n" : ",\n") + "            \"" + param.getKey() + "\" : \""
+                            + param.getValue() + "\"");
+                }
+                out.write(p == 0 ? "},\n" : "\n        },\n");
+                out.write("        \"primaryMetric\" : {\n");
+                out.write("            \"score\" : " + r.score() + ",\n");
+                out.write("            \"scoreError\" : " + r.scoreError() + ",\n");
+                out.write("            \"scoreUnit\" : \"ns/op\",\n");
+                out.write("            \"rawData\" : [[");
+                for (int k = 0; k < r.rawData().length; k++) {
+                    out.write((k == 0 ? "" : ", ") + r.rawData()[k]);
+                }
+                out.write("]]\n        },\n");
+                out.write("        \"secondaryMetrics\" : {");
+                int m = 0;
+                for (Map.Entry<String, Secondary> metric : r.secondaryMetrics().entrySet()) {
+                    out.write((m++ == 0 ? "\n" : ",\n") + "            \"" + metric.getKey() + "\" : {\n");
+                    out.write("                \"score\" : " + metric.getValue().score() + ",\n");
+                    out.write("                \"scoreError\" : \"NaN\",\n");
+                    out.write("                \"scoreUnit\" : \"" + metric.getValue().unit() + "\",\n");
+                    out.write("                \"rawData\" : [[" + metric.getValue().score() + "]]\n");
+                    out.write("            }");
+                }
+                out.write(m == 0 ? "}\n    }" : "\n        }\n    }");
+            }
+            out.write("\n]\n");
+        }
+    }
+
+    /**
+     * Writes one CSV row per result with its parameters and secondary
+     * metrics as name=value pairs
+     * @param file The file to write
+     */
+    void writeCsv(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("benchmark,params,score_ns_per_op,score_error,iterations,secondary");
+            out.newLine();
+            for (Result r : results) {
+                StringBuilder params = new StringBuilder();
+                for (Map.Entry<String, String> param : r.params().entrySet()) {
+                    if (params.length() > 0) params.append(';');
+                    params.append(param.getKey()).append('=').append(param.getValue());
+                }
+                StringBuilder secondary = new StringBuilder();
+                for (Map.Entry<String, Secondary> metric : r.secondaryMetrics().entrySet()) {
+                    if (secondary.length() > 0) secondary.append(';');
+                    secondary.append(metric.getKey()).append('=').append(metric.getValue().score());
+                }
+                out.write(r.benchmark() + "," + params + "," + r.score() + "," + r.scoreError() + ","
+                        + r.rawData().length + "," + secondary);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return The sum of every result consumed, so the work cannot be optimised away
+     */
+    double sink() {
+        return sink;
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,217 @@
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmarks of whole memetic runs, where what a setting buys in solution
+ * quality matters as much as its speed. Each operation is one seeded run,
+ * with a new seed per operation, and the quality of the runs is attached
+ * to the result as secondary metrics averaged over every run the harness
+ * made. Runs train on the synthetic dataset of the smallest requested
+ * size and validate on another of the same size.
+ * Generational and steady-state runs also record the best cost reached by
+ * fixed wall-clock checkpoints from the start of the run, so the two modes
+ * can be compared on the quality they deliver in a given time rather than
+ * only on their final cost.
+ */
+final class ExperimentBenchmarks {
+    private static final int PARENTS = 50;
+    private static final int GENERATIONS = 30;
+
+    private ExperimentBenchmarks() {
+    }
+
+    /** Running totals over every run of one benchmark. */
+    private static final class Totals {
+        long runs;
+        double bestCost;
+        double validationError;
+        double generationsPerSecond;
+        final double[] bestCostAt; // summed over the runs that had a cost by each checkpoint
+        final long[] runsAt;
+
+        Totals(int checkpoints) {
+            bestCostAt = new double[checkpoints];
+            runsAt = new long[checkpoints];
+        }
+    }
+
+    /**
+     * @param harness The harness to run the benchmarks in
+     * @param directory Where the synthetic datasets are written
+     * @param datasetSizes The numbers of rows requested, the smallest is used
+     * @param batchSizes The mini-batch sizes to compare with full-data local search
+     * @param workers The number of steady-state worker threads
+     * @param checkpointsMillis The wall-clock times, in milliseconds from the
+     *                          start of a run, at which its best cost is recorded
+     */
+    static void run(BenchmarkHarness harness, Path directory, int[] datasetSizes, int[] batchSizes, int workers,
+                    int[] checkpointsMillis) throws Throwable {
+        int rows = datasetSizes[0];
+        CarPricePrediction problem = new CarPricePrediction(FitnessBenchmarks.SyntheticDataset(directory, rows));
+        CarPricePrediction validation = new CarPricePrediction(
+                FitnessBenchmarks.SyntheticDataset(directory, "validation-" + rows, rows, -rows));
+        Memetic(harness, problem, validation, SamplingPolicy.FULL_DATA, checkpointsMillis);
+        for (int batchRows : batchSizes) {
+            Memetic(harness, problem, validation, new SamplingPolicy(batchRows, true), checkpointsMillis);
+            Memetic(harness, problem, validation, new SamplingPolicy(batchRows, false), checkpointsMillis);
+        }
+        SteadyState(harness, problem, workers, checkpointsMillis);
+        Islands(harness, problem, workers);
+    }
+
+    /**
+     * Times generational memetic runs with one sampling policy and records
+     * offspring improved per second, the mean final training and validation
+     * error, the mean best cost at each checkpoint and the fraction of rows
+     * the bounded local search skipped. Run once with -Dea.hardestFirst=true
+     * to compare row orders
+     * @param harness The harness to run the benchmark in
+     * @param problem The prediction problem to train on
+     * @param validation The prediction problem to validate the best solution on
+     * @param sampling How local search scores candidate moves
+     * @param checkpointsMillis When the best cost is recorded, see run
+     */
+    static void Memetic(BenchmarkHarness harness, CarPricePrediction problem, CarPricePrediction validation,
+                        SamplingPolicy sampling, int[] checkpointsMillis) throws Throwable {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("datasetSize", Integer.toString(problem.rows()));
+        params.put("batchRows", Integer.toString(sampling.batchRows()));
+        params.put("confirm", Boolean.toString(sampling.confirmOnFullData()));
+        params.put("hardestFirst", Boolean.toString(IncrementalEvaluator.HARDEST_FIRST));
+        Totals totals = new Totals(checkpointsMillis.length);
+        long scoredBefore = EvaluationContext.totalRowsScored();
+        long skippedBefore = EvaluationContext.totalRowsSkipped();
+        BenchmarkHarness.Result result = harness.run("runMemetic", params, () -> {
+            long start = System.nanoTime();
+            List<double[]> trace = new ArrayList<>(GENERATIONS + 1);
+            CalcsMain engine = new CalcsMain(Config(++totals.runs, sampling));
+            engine.Initialise(problem);
+            trace.add(new double[]{(System.nanoTime() - start) / 1e9, engine.bestCost()});
+            for (int i = 0; i < GENERATIONS; i++) {
+                engine.EvolvePopulation();
+                trace.add(new double[]{(System.nanoTime() - start) / 1e9, engine.bestCost()});
+            }
+            AddTrace(totals, trace, checkpointsMillis);
+            totals.bestCost += engine.bestCost();
+            totals.validationError += validation.evaluate(engine.bestPop());
+            return engine.bestCost();
+        });
+        if (result == null) return;
+        long scored = EvaluationContext.totalRowsScored() - scoredBefore;
+        long skipped = EvaluationContext.totalRowsSkipped() - skippedBefore;
+        harness.secondary(result, "offspringPerSecond", (double) PARENTS * GENERATIONS * 1e9 / result.score(),
+                "offspring/s");
+        harness.secondary(result, "bestCost", totals.bestCost / totals.runs, "mse");
+        harness.secondary(result, "validationError", totals.validationError / totals.runs, "mse");
+        harness.secondary(result, "rowsSkippedFraction", (double) skipped / Math.max(1, scored + skipped), "");
+        CheckpointSecondaries(harness, result, totals, checkpointsMillis);
+    }
+
+    /**
+     * Times steady-state runs creating as many offspring as a generational
+     * run and records offspring per second, the mean final best cost and
+     * the mean best cost at each checkpoint
+     * @param harness The harness to run the benchmark in
+     * @param problem The prediction problem to train on
+     * @param workers The number of steady-state worker threads
+     * @param checkpointsMillis When the best cost is recorded, see run
+     */
+    static void SteadyState(BenchmarkHarness harness, CarPricePrediction problem, int workers,
+                            int[] checkpointsMillis) throws Throwable {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("datasetSize", Integer.toString(problem.rows()));
+        params.put("workers", Integer.toString(workers));
+        long offspring = (long) PARENTS * GENERATIONS;
+        Totals totals = new Totals(checkpointsMillis.length);
+        BenchmarkHarness.Result result = harness.run("runSteadyState", params, () -> {
+            var steady = new SteadyStateEvolution(PARENTS, workers, ++totals.runs,
+                    seed -> new CalcsMain(Config(seed, SamplingPolicy.FULL_DATA)));
+            steady.Run(problem, offspring);
+            AddTrace(totals, steady.bestCostTrace(), checkpointsMillis);
+            totals.bestCost += steady.bestCost();
+            return steady.bestCost();
+        });
+        if (result == null) return;
+        harness.secondary(result, "offspringPerSecond", offspring * 1e9 / result.score(), "offspring/s");
+        harness.secondary(result, "bestCost", totals.bestCost / totals.runs, "mse");
+        CheckpointSecondaries(harness, result, totals, checkpointsMillis);
+    }
+
+    /**
+     * Adds a run's best cost at each checkpoint to the totals. A run that
+     * ended before a checkpoint counts with its final best cost; one that
+     * had no cost yet is left out of that checkpoint's mean
+     * @param totals The totals of the benchmark
+     * @param trace Pairs of (elapsed seconds, best cost) sorted by time
+     * @param checkpointsMillis When the best cost is recorded, see run
+     */
+    private static void AddTrace(Totals totals, List<double[]> trace, int[] checkpointsMillis) {
+        for (int k = 0; k < checkpointsMillis.length; k++) {
+            double best = Double.NaN;
+            for (double[] point : trace) {
+                if (point[0] * 1000 > checkpointsMillis[k]) break;
+                best = Double.isNaN(best) ? point[1] : Math.min(best, point[1]);
+            }
+            if (!Double.isNaN(best)) {
+                totals.bestCostAt[k] += best;
+                totals.runsAt[k]++;
+            }
+        }
+    }
+
+    /**
+     * Records the mean best cost at each checkpoint any run reached, as
+     * bestCostAt{milliseconds}ms
+     * @param harness The harness the benchmark ran in
+     * @param result The benchmark's result
+     * @param totals The totals of the benchmark
+     * @param checkpointsMillis When the best cost was recorded, see run
+     */
+    private static void CheckpointSecondaries(BenchmarkHarness harness, BenchmarkHarness.Result result,
+                                              Totals totals, int[] checkpointsMillis) {
+        for (int k = 0; k < checkpointsMillis.length; k++) {
+            if (totals.runsAt[k] == 0) continue;
+            harness.secondary(result, "bestCostAt" + checkpointsMillis[k] + "ms",
+                    totals.bestCostAt[k] / totals.runsAt[k], "mse");
+        }
+    }
+
+    /**
+     * Times island model runs of memetic engines, one island per worker
+     * thread and each as large and as long as a generational run, and
+     * records the mean generations per second of an island and the mean
+     * final best cost
+     * @param harness The harness to run the benchmark in
+     * @param problem The prediction problem to train on
+     * @param islands The number of islands
+     */
+    static void Islands(BenchmarkHarness harness, CarPricePrediction problem, int islands) throws Throwable {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("datasetSize", Integer.toString(problem.rows()));
+        params.put("islands", Integer.toString(islands));
+        Totals totals = new Totals(0);
+        BenchmarkHarness.Result result = harness.run("runIslands", params, () -> {
+            long seed = ++totals.runs;
+            var model = new IslandModel(islands, 5, 2,
+                    island -> new CalcsMain(Config(RandomStreams.derive(seed, island), SamplingPolicy.FULL_DATA)));
+            model.Run(problem, GENERATIONS);
+            for (double rate : model.generationsPerSecond()) totals.generationsPerSecond += rate / islands;
+            totals.bestCost += model.bestCost();
+            return model.bestCost();
+        });
+        if (result == null) return;
+        harness.secondary(result, "generationsPerSecond", totals.generationsPerSecond / totals.runs, "generations/s");
+        harness.secondary(result, "bestCost", totals.bestCost / totals.runs, "mse");
+    }
+
+    /**
+     * @return Fixed settings so results do not depend on system properties
+     */
+    private static EngineConfig Config(long seed, SamplingPolicy sampling) {
+        return new EngineConfig(PARENTS, GENERATIONS, 0.7f, seed, PopulationEvaluator.sequential(), sampling,
+                Termination.GENERATIONS_ONLY, CheckpointPolicy.NONE, SurrogatePolicy.OFF);
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Benchmarks of fitness evaluation and dataset loading over synthetic
+ * datasets of each requested size. The vector benchmark runs only when
+ * VectorEvaluator is compiled from vector/ and the JVM is started with
+ * "--add-modules jdk.incubator.vector".
+ */
+final class FitnessBenchmarks {
+    private FitnessBenchmarks() {
+    }
+
+    /**
+     * @param harness The harness to run the benchmarks in
+     * @param directory Where the synthetic datasets are written
+     * @param datasetSizes The numbers of rows to benchmark with
+     */
+    static void run(BenchmarkHarness harness, Path directory, int[] datasetSizes) throws Throwable {
+        double[] parameters = EvolutionEngine.RandomParameters(CarPricePrediction.bounds(), new SplittableRandom(1));
+        EvaluationContext context = EvaluationContext.current();
+        MethodHandle vector = CarPricePrediction.vectorMethod("evaluate", CarPricePrediction.VECTOR_EVALUATE_TYPE);
+        MethodHandle lanes = CarPricePrediction.vectorMethod("lanes", MethodType.methodType(int.class));
+        if ((vector == null || lanes == null) && harness.selected("evaluateVector")) {
+            System.out.println("Skipping evaluateVector: VectorEvaluator is not available, compile vector/ and run "
+                    + "with --add-modules jdk.incubator.vector");
+        }
+        for (int rows : datasetSizes) {
+            Map<String, String> params = Map.of("datasetSize", Integer.toString(rows));
+            Path csv = SyntheticDataset(directory, rows);
+            CarPricePrediction problem = new CarPricePrediction(csv);
+            harness.run("evaluate", params, () -> problem.evaluate(parameters, context));
+            if (vector != null && lanes != null) {
+                VectorVersusScalar(harness, problem, parameters, vector, (int) lanes.invokeExact(), context);
+            }
+            double[] features = problem.features();
+            int[] row = {0};
+            harness.run("predict", params, () -> {
+                int r = row[0];
+                row[0] = r + 1 == rows ? 0 : r + 1;
+                return CarPricePrediction.predict(features, r * CarPricePrediction.N_INPUTS, parameters, 0,
+                        context.hidden);
+            });
+            IncrementalEvaluator incremental = context.incremental(problem);
+            incremental.reset(parameters);
+            int[] index = {0};
+            harness.run("evaluateMove", params, () -> {
+                int i = index[0];
+                index[0] = i + 1 == parameters.length ? 0 : i + 1;
+                return incremental.evaluateMove(i, parameters[i] + 0.125);
+            });
+            harness.run("load_dataset", params, () -> CarPricePrediction.load_dataset(csv.toString()).targets()[0]);
+            BenchmarkHarness.Result parse = harness.run("parseCsv", params,
+                    () -> new CsvDatasetParser(CarPricePrediction.N_INPUTS).parse(csv).targets()[0]);
+            if (parse != null) harness.secondary(parse, "throughput", Files.size(csv) * 1e3 / parse.score(), "MB/s");
+        }
+    }
+
+    /**
+     * Times VectorEvaluator against the same parameters as the scalar
+     * evaluate benchmark and records the largest relative difference in MSE
+     * from the scalar evaluate over a random population
+     * @param harness The harness to run the benchmark in
+     * @param problem The prediction problem to evaluate against
+     * @param parameters The parameters to time
+     * @param vector VectorEvaluator.evaluate
+     * @param lanes The number of double lanes VectorEvaluator uses
+     * @param context The calling thread's evaluation context
+     */
+    static void VectorVersusScalar(BenchmarkHarness harness, CarPricePrediction problem, double[] parameters,
+                                   MethodHandle vector, int lanes, EvaluationContext context) throws Throwable {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("datasetSize", Integer.toString(problem.rows()));
+        params.put("lanes", Integer.toString(lanes));
+        double[] columns = problem.columns();
+        double[] targets = problem.targets();
+        int rows = problem.rows();
+        BenchmarkHarness.Result result = harness.run("evaluateVector", params,
+                () -> (double) vector.invokeExact(columns, targets, rows, parameters, 0));
+        if (result == null) return;
+        SplittableRandom random = new SplittableRandom(7);
+        double maxDeviation = 0;
+        for (int i = 0; i < 100; i++) {
+            double[] candidate = EvolutionEngine.RandomParameters(CarPricePrediction.bounds(), random);
+            double scalar = problem.evaluate(candidate, context);
+            double vectorised = (double) vector.invokeExact(columns, targets, rows, candidate, 0);
+            maxDeviation = Math.max(maxDeviation, Math.abs(vectorised - scalar) / scalar);
+        }
+        harness.secondary(result, "maxRelativeDeviation", maxDeviation, "");
+    }
+
+    /**
+     * Writes a dataset of uniformly random features and targets, seeded by
+     * its size so every run benchmarks the same data
+     * @param directory Where to write the file
+     * @param rows The number of rows
+     * @return The CSV file
+     */
+    static Path SyntheticDataset(Path directory, int rows) throws IOException {
+        return SyntheticDataset(directory, "synthetic-" + rows, rows, rows);
+    }
+
+    /**
+     * Writes a dataset of uniformly random features and targets
+     * @param directory Where to write the file
+     * @param name The file name without its extension
+     * @param rows The number of rows
+     * @param seed The seed of the random values
+     * @return The CSV file
+     */
+    static Path SyntheticDataset(Path directory, String name, int rows, long seed) throws IOException {
+        Path csv = directory.resolve(name + ".csv");
+        if (Files.exists(csv)) return csv;
+        SplittableRandom random = new SplittableRandom(seed);
+        try (BufferedWriter out = Files.newBufferedWriter(csv)) {
+            for (int r = 0; r < rows; r++) {
+                StringBuilder line = new StringBuilder();
+                for (int j = 0; j <= CarPricePrediction.N_INPUTS; j++) {
+                    if (j > 0) line.append(',');
+                    line.append(String.format(Locale.ROOT, "%.6f", random.nextDouble()));
+                }
+                out.write(line.toString());
+                out.newLine();
+            }
+        }
+        return csv;
+    }
+}
@@ -0,0 +1,116 @@
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Benchmarks of the evolutionary operators, of scoring a whole population
+ * candidate by candidate against the batch paths, and of whole generations
+ * for each population size and dataset size.
+ */
+final class OperatorBenchmarks {
+    private OperatorBenchmarks() {
+    }
+
+    /**
+     * @param harness The harness to run the benchmarks in
+     * @param directory Where the synthetic datasets are written
+     * @param populationSizes The numbers of parents to benchmark with
+     * @param datasetSizes The numbers of rows to benchmark whole generations with
+     */
+    static void run(BenchmarkHarness harness, Path directory, int[] populationSizes, int[] datasetSizes)
+            throws Throwable {
+        CarPricePrediction smallest = new CarPricePrediction(
+                FitnessBenchmarks.SyntheticDataset(directory, datasetSizes[0]));
+        for (int population : populationSizes) {
+            Map<String, String> params = Map.of("populationSize", Integer.toString(population));
+            BaselineMain engine = new BaselineMain(Config(population));
+            engine.Initialise(smallest);
+            int length = engine.genomeLength;
+            int slots = Math.max(2, population / 4 / 2 * 2);
+            harness.run("tournamentSelection", params, () -> engine.TournamentSelection(engine.fitness, slots));
+            double[] offspring = new double[2 * length];
+            harness.run("onePointCrossover", params, () -> {
+                engine.OnePointCrossover(engine.genomes, 0, engine.genomes, length, offspring, 0, offspring, length);
+                return offspring[0];
+            });
+            harness.run("swapMutation", params, () -> {
+                engine.SwapMutation(offspring, 0, length);
+                return offspring[0];
+            });
+        }
+        for (int rows : datasetSizes) {
+            CarPricePrediction problem = new CarPricePrediction(FitnessBenchmarks.SyntheticDataset(directory, rows));
+            for (int population : populationSizes) {
+                Map<String, String> params = new LinkedHashMap<>();
+                params.put("populationSize", Integer.toString(population));
+                params.put("datasetSize", Integer.toString(rows));
+                BatchVersusSingle(harness, params, problem, population);
+                BaselineMain baseline = new BaselineMain(Config(population));
+                baseline.Initialise(problem);
+                harness.run("generationBaseline", params, () -> {
+                    baseline.EvolvePopulation();
+                    return baseline.bestCost();
+                });
+                CalcsMain memetic = new CalcsMain(Config(population));
+                memetic.Initialise(problem);
+                harness.run("generationMemetic", params, () -> {
+                    memetic.EvolvePopulation();
+                    return memetic.bestCost();
+                });
+            }
+        }
+    }
+
+    /**
+     * Times scoring a random population candidate by candidate against one
+     * evaluateBatch call over jagged rows and one over the same population
+     * packed into a flat genome matrix, after checking all three agree
+     * @param harness The harness to run the benchmarks in
+     * @param params The population and dataset size parameters
+     * @param problem The prediction problem to evaluate against
+     * @param size The population size
+     */
+    static void BatchVersusSingle(BenchmarkHarness harness, Map<String, String> params, CarPricePrediction problem,
+                                  int size) throws Throwable {
+        EvaluationContext context = EvaluationContext.current();
+        double[][] bounds = CarPricePrediction.bounds();
+        double[][] population = new double[size][];
+        SplittableRandom random = new SplittableRandom(size);
+        for (int i = 0; i < size; i++) population[i] = EvolutionEngine.RandomParameters(bounds, random);
+        int length = CarPricePrediction.N_PARAMETERS;
+        double[] genomes = new double[size * length];
+        for (int i = 0; i < size; i++) System.arraycopy(population[i], 0, genomes, i * length, length);
+        double[] single = new double[size];
+        double[] batch = new double[size];
+        double[] flat = new double[size];
+        for (int i = 0; i < size; i++) single[i] = problem.evaluate(population[i], context);
+        problem.evaluateBatch(population, 0, size, batch, context);
+        problem.evaluateBatch(genomes, 0, size, flat, context);
+        for (int i = 0; i < size; i++) {
+            if (single[i] != batch[i]) throw new IllegalStateException("Batch result differs at " + i);
+            if (single[i] != flat[i]) throw new IllegalStateException("Flat batch result differs at " + i);
+        }
+        harness.run("evaluatePopulation", params, () -> {
+            for (int i = 0; i < size; i++) single[i] = problem.evaluate(population[i], context);
+            return single[0];
+        });
+        harness.run("evaluateBatch", params, () -> {
+            problem.evaluateBatch(population, 0, size, batch, context);
+            return batch[0];
+        });
+        harness.run("evaluateBatchFlat", params, () -> {
+            problem.evaluateBatch(genomes, 0, size, flat, context);
+            return flat[0];
+        });
+    }
+
+    /**
+     * @return Fixed settings so results do not depend on system properties
+     */
+    private static EngineConfig Config(int population) {
+        return new EngineConfig(population, 30, 0.7f, 1, PopulationEvaluator.sequential(),
+                SamplingPolicy.FULL_DATA, Termination.GENERATIONS_ONLY, CheckpointPolicy.NONE,
+                SurrogatePolicy.OFF);
+    }
+}
@@ -0,0 +1,57 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Entry point of the benchmark suite. The suite lives in bench/, apart from
+ * the main sources, and is compiled against them. The second line is only
+ * needed for the evaluateVector benchmark, which also needs the
+ * --add-modules flag when run:
+ * <pre>
+ * javac -d out *.java
+ * javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java
+ * javac -cp out -d out-bench bench/*.java
+ * java --add-modules jdk.incubator.vector -cp out:out-bench RunBenchmarks [filter]
+ * </pre>
+ * Only benchmarks whose name contains the optional filter run, e.g.
+ * "evaluate" or "runMemetic". Settings are read from system properties:
+ * bench.warmup and bench.iterations (iterations, default 3 and 5),
+ * bench.time (milliseconds per iteration, default 1000),
+ * bench.populationSizes and bench.datasetSizes (comma separated, default
+ * 50,500,5000 and 1000,10000), bench.batchSizes (the mini-batch sizes of
+ * runMemetic, default 32,128,512), bench.workers (the threads of
+ * runSteadyState and the islands of runIslands, default the number of
+ * processors), bench.costCheckpoints (the wall-clock times in milliseconds
+ * at which runMemetic and runSteadyState record the best cost so far,
+ * default 100,250,500,1000,2000), bench.dataDir (where synthetic datasets
+ * are kept, default bench-data) and bench.output (the result file prefix,
+ * default bench-results; .json and .csv are written).
+ */
+public class RunBenchmarks {
+    public static void main(String[] args) throws Throwable {
+        BenchmarkHarness harness = new BenchmarkHarness(
+                Integer.getInteger("bench.warmup", 3),
+                Integer.getInteger("bench.iterations", 5),
+                Long.getLong("bench.time", 1000),
+                args.length > 0 ? args[0] : null);
+        int[] populationSizes = Sizes(System.getProperty("bench.populationSizes", "50,500,5000"));
+        int[] datasetSizes = Sizes(System.getProperty("bench.datasetSizes", "1000,10000"));
+        int[] batchSizes = Sizes(System.getProperty("bench.batchSizes", "32,128,512"));
+        int workers = Integer.getInteger("bench.workers", Runtime.getRuntime().availableProcessors());
+        int[] costCheckpoints = Sizes(System.getProperty("bench.costCheckpoints", "100,250,500,1000,2000"));
+        Path directory = Path.of(System.getProperty("bench.dataDir", "bench-data"));
+        Files.createDirectories(directory);
+        FitnessBenchmarks.run(harness, directory, datasetSizes);
+        OperatorBenchmarks.run(harness, directory, populationSizes, datasetSizes);
+        ExperimentBenchmarks.run(harness, directory, datasetSizes, batchSizes, workers, costCheckpoints);
+        String output = System.getProperty("bench.output", "bench-results");
+        harness.writeJson(Path.of(output + ".json"));
+        harness.writeCsv(Path.of(output + ".csv"));
+        System.out.println("Results written to " + output + ".json and " + output + ".csv (checksum "
+                + harness.sink() + ")");
+    }
+
+    private static int[] Sizes(String list) {
+        return Arrays.stream(list.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -0,0 +1,80 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Forward pass and squared error computed with the incubating Vector API,
+ * one row per lane.
+ * Needs "--add-modules jdk.incubator.vector" at compile and run time, so it
+ * is kept out of the main source directory and compiled on its own after
+ * it: "javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java".
+ * CarPricePrediction reaches it only through a MethodHandle looked up when
+ * the vector backend is selected, so the rest of the tree builds and runs
+ * without the module or this class.
+ * Each lane performs the same multiply and add sequence as
+ * CarPricePrediction::predict, so the individual predictions match the
+ * scalar path. The squared errors are summed per lane and then reduced, so
+ * the MSE can differ from the scalar result in the last few bits.
+ */
+final class VectorEvaluator {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int N_INPUTS = CarPricePrediction.N_INPUTS;
+    private static final int HIDDEN_LAYER_SIZE = CarPricePrediction.HIDDEN_LAYER_SIZE;
+    private static final int N_WEIGHTS = CarPricePrediction.N_WEIGHTS;
+
+    private VectorEvaluator() {
+    }
+
+    /**
+     * @return The number of rows processed by each vector operation
+     */
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Evaluates a set of ANN parameters over a column-major feature matrix.
+     * @param columns Feature j of row r stored at columns[j * rows + r]
+     * @param targets The target of each row
+     * @param rows The number of rows
+     * @param parameters Array holding the weights and biases of the ANN
+     * @param base Index of the first parameter
+     * @return The MSE of the predictions
+     */
+    static double evaluate(double[] columns, double[] targets, int rows, double[] parameters, int base) {
+        final int output_bias = base + N_WEIGHTS + HIDDEN_LAYER_SIZE;
+        final int output_weights = base + N_INPUTS * HIDDEN_LAYER_SIZE;
+        final int biases = base + N_WEIGHTS;
+        final int upper = SPECIES.loopBound(rows);
+        DoubleVector squared = DoubleVector.zero(SPECIES);
+        for (int r = 0; r < upper; r += SPECIES.length()) {
+            DoubleVector output = DoubleVector.broadcast(SPECIES, parameters[output_bias]);
+            for (int u = 0; u < HIDDEN_LAYER_SIZE; u++) {
+                DoubleVector sum = DoubleVector.broadcast(SPECIES, parameters[biases + u]);
+                for (int j = 0, weight_pos = base + u * N_INPUTS; j < N_INPUTS; j++, weight_pos++) {
+                    DoubleVector x = DoubleVector.fromArray(SPECIES, columns, j * rows + r);
+                    sum = sum.add(x.mul(parameters[weight_pos]));
+                }
+                sum = sum.lanewise(VectorOperators.MAX, 0.0);
+                output = output.add(sum.mul(parameters[output_weights + u]));
+            }
+            DoubleVector error = DoubleVector.fromArray(SPECIES, targets, r).sub(output);
+            squared = squared.add(error.mul(error));
+        }
+        double mse = squared.reduceLanes(VectorOperators.ADD);
+        for (int r = upper; r < rows; r++) {
+            double output = parameters[output_bias];
+            for (int u = 0; u < HIDDEN_LAYER_SIZE; u++) {
+                double sum = parameters[biases + u];
+                for (int j = 0, weight_pos = base + u * N_INPUTS; j < N_INPUTS; j++, weight_pos++) {
+                    sum += columns[j * rows + r] * parameters[weight_pos];
+                }
+                output += Math.max(sum, 0.0) * parameters[output_weights + u];
+            }
+            double error = targets[r] - output;
+            mse += error * error;
+        }
+        mse /= rows;
+        return mse;
+    }
+}